@@ -0,0 +1,77 @@
+package com.example.crptapi.benchmarks;
+
+import com.example.crptapi.CrptApi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость сжатия тела запроса gzip: время отправки документа, включая сериализацию и сжатие
+ * при вычитывании тела HTTP клиентом-заглушкой, и количество байт, переданных на документ.
+ * Количество байт печатается в конце прогона, так как JMH не умеет нормировать счетчики на операцию
+ * в режиме среднего времени.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmarks.xml")
+public class CompressionBenchmark {
+
+    private static final String URL = "http://localhost/api/v3/lk/documents/create";
+
+    @Param({"10", "1000", "10000"})
+    private int productCount;
+
+    /**
+     * -1 - без сжатия, 0 - сжимать любое тело
+     */
+    @Param({"-1", "0"})
+    private int compressionThreshold;
+
+    @Param({"1", "6"})
+    private int compressionLevel;
+
+    private StubHttpClient httpClient;
+    private CrptApi api;
+    private CrptApi.Document document;
+    private long documents;
+
+    @Setup
+    public void setUp() {
+        httpClient = new StubHttpClient();
+        CrptApi.Options options = new CrptApi.Options();
+        options.setHttpClient(httpClient);
+        options.setCompressionThreshold(compressionThreshold);
+        options.setCompressionLevel(compressionLevel);
+        options.setRetryPolicy(CrptApi.RetryPolicy.none());
+        options.setJmxEnabled(false);
+        api = new CrptApi(new CrptApi.TokenBucketRateLimiter(TimeUnit.NANOSECONDS, 1), options);
+        document = Documents.create("compressed", productCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        api.close();
+        System.out.println();
+        System.out.println("Request bytes per document: " + httpClient.getRequestBytes() / Math.max(1, documents));
+    }
+
+    @Benchmark
+    public CrptApi.CreateResult createDocument() {
+        documents++;
+        return api.createDocumentAsync(URL, document, "signature").join();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.crptapi.benchmarks;
+
+import com.example.crptapi.CrptApi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Накладные расходы клиента от постановки документа в очередь до отправки,
+ * измеренные на HTTP клиенте-заглушке, который отвечает сразу и без сети.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmarks.xml")
+public class DispatchBenchmark {
+
+    private static final String URL = "http://localhost/api/v3/lk/documents/create";
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"STRING", "STREAMING"})
+    private CrptApi.BodyEncoding bodyEncoding;
+
+    private CrptApi api;
+    private CrptApi.Document document;
+    private List<CrptApi.Document> batch;
+
+    @Setup
+    public void setUp() {
+        CrptApi.Options options = new CrptApi.Options();
+        options.setHttpClient(new StubHttpClient());
+        options.setBodyEncoding(bodyEncoding);
+        options.setRetryPolicy(CrptApi.RetryPolicy.none());
+        options.setJmxEnabled(false);
+        api = new CrptApi(new CrptApi.TokenBucketRateLimiter(TimeUnit.NANOSECONDS, 1), options);
+
+        document = Documents.create("single", 10);
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(Documents.create("batch-" + i, 10));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        api.close();
+    }
+
+    @Benchmark
+    public CrptApi.CreateResult createDocument() {
+        return api.createDocumentAsync(URL, document, "signature").join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public CrptApi.BatchResult createDocuments() {
+        return api.createDocuments(URL, batch, "signature").join();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.crptapi.benchmarks;
+
+import com.example.crptapi.CrptApi;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Класс для создания тестовых документов.
+ */
+final class Documents {
+
+    private Documents() {
+    }
+
+    private static final LocalDate PRODUCTION_DATE = LocalDate.of(2024, 6, 1);
+
+    /**
+     * Метод для создания документа с заданным количеством продуктов.
+     *
+     * @param docId Идентификатор документа
+     * @param productCount Количество продуктов
+     * @return Документ
+     */
+    static CrptApi.Document create(String docId, int productCount) {
+        CrptApi.Description description = new CrptApi.Description();
+        description.setParticipantInn("7700000000");
+
+        List<CrptApi.Product> products = new ArrayList<>(productCount);
+        for (int i = 0; i < productCount; i++) {
+            CrptApi.Product product = new CrptApi.Product();
+            product.setCertificateDocument("CONFORMITY_CERTIFICATE");
+            product.setCertificateDocumentDate(PRODUCTION_DATE.minusDays(i % 365));
+            product.setCertificate_DocumentNumber("RU.D-RU.PA01.B." + (10_000 + i));
+            product.setOwnerInn("7700000000");
+            product.setProducerInn("7700000001");
+            product.setProductionDate(PRODUCTION_DATE);
+            product.setTnvedCode("6403993600");
+            product.setUitCode("0104600000000001215" + String.format("%08d", i));
+            products.add(product);
+        }
+
+        CrptApi.Document document = new CrptApi.Document();
+        document.setDescription(description);
+        document.setProducts(products);
+        document.setDocId(docId);
+        document.setDocStatus("CREATED");
+        document.setDocType("LP_INTRODUCE_GOODS");
+        document.setOwnerInn("7700000000");
+        document.setParticipantInn("7700000000");
+        document.setProducerInn("7700000001");
+        document.setProductionDate(PRODUCTION_DATE);
+        document.setProductionType("OWN_PRODUCTION");
+        document.setRegDate(PRODUCTION_DATE.plusDays(1));
+        document.setRegNumber("REG-" + docId);
+        return document;
+    }
+}
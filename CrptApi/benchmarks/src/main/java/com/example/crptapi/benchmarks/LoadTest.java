@@ -0,0 +1,186 @@
+package com.example.crptapi.benchmarks;
+
+import com.example.crptapi.CrptApi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный тест клиента против локального {@link StubServer}.
+ * Несколько потоков-производителей отправляют документы без пауз, а сервер отвечает с заданной задержкой
+ * и долей ошибок. Для каждого сценария печатаются достигнутая частота запросов на сервере,
+ * количество нарушений лимита, ответы с ошибками, повторы и перцентили задержек: от постановки
+ * документа в очередь до результата и времени ответа на одну попытку.
+ * <p>
+ * Запуск набора сценариев по умолчанию:
+ * {@code java -cp target/benchmarks.jar com.example.crptapi.benchmarks.LoadTest}
+ * <p>
+ * Запуск одного сценария, параметры как в {@link Scenario}:
+ * {@code java -cp target/benchmarks.jar com.example.crptapi.benchmarks.LoadTest limit=200 producers=8 latency=50 errorRate=0.01}
+ */
+public class LoadTest {
+
+    private static final String SIGNATURE = "signature";
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("log4j2.configurationFile") == null) {
+            System.setProperty("log4j2.configurationFile", "log4j2-loadtest.xml");
+        }
+
+        List<Scenario> scenarios = new ArrayList<>();
+        if (args.length == 0) {
+            scenarios.add(new Scenario("baseline"));
+            scenarios.add(new Scenario("slow server").set("latency", "400"));
+            scenarios.add(new Scenario("5% errors").set("errorRate", "0.05"));
+            scenarios.add(new Scenario("10% throttled").set("throttleRate", "0.1"));
+            scenarios.add(new Scenario("strict limit").set("enforceLimit", "true"));
+            scenarios.add(new Scenario("strict, adaptive").set("enforceLimit", "true").set("adaptive", "true"));
+        } else {
+            Scenario scenario = new Scenario("custom");
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Expected key=value argument: " + arg);
+                }
+                scenario.set(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+            scenarios.add(scenario);
+        }
+
+        System.out.printf("%-18s %6s %6s %6s %8s %8s %6s %6s %6s %6s %8s %8s %8s %8s %8s %8s%n",
+                "scenario", "docs", "ok", "failed", "req/s", "docs/s", "viol", "429", "500", "retry",
+                "e2e p50", "e2e p90", "e2e p99", "rtt p50", "rtt p99", "rtt max");
+        run(new Scenario("warmup").set("documents", "200"), false);
+        for (Scenario scenario : scenarios) {
+            run(scenario, true);
+        }
+    }
+
+    /**
+     * Метод для прогона сценария и печати строки с результатами
+     *
+     * @param scenario Сценарий
+     * @param print Печатать ли результаты, прогрев не печатается
+     */
+    private static void run(Scenario scenario, boolean print) throws IOException, InterruptedException {
+        try (StubServer server = new StubServer(TimeUnit.SECONDS, scenario.limit, scenario.latency,
+                scenario.errorRate, scenario.throttleRate, scenario.enforceLimit)) {
+            CrptApi.Options options = new CrptApi.Options();
+            options.setAdaptiveRate(scenario.adaptive);
+            options.setMaxInFlightRequests(scenario.maxInFlight);
+            options.setQueueCapacity(Math.max(options.getQueueCapacity(), scenario.documents));
+            options.setJmxEnabled(false);
+
+            CrptApi.Document document = Documents.create("load-test", scenario.products);
+            long[] latencies = new long[scenario.documents];
+            AtomicLong succeeded = new AtomicLong();
+            CountDownLatch completed = new CountDownLatch(scenario.documents);
+            String url = server.url();
+
+            long start = System.nanoTime();
+            CrptApi.MetricsSnapshot metrics;
+            try (CrptApi api = new CrptApi(TimeUnit.SECONDS, scenario.limit, options)) {
+                List<Thread> producers = new ArrayList<>();
+                for (int producer = 0; producer < scenario.producers; producer++) {
+                    int first = producer;
+                    Thread thread = new Thread(() -> {
+                        for (int i = first; i < scenario.documents; i += scenario.producers) {
+                            int index = i;
+                            long submittedAt = System.nanoTime();
+                            CompletableFuture<CrptApi.CreateResult> result = api.createDocumentAsync(url, document, SIGNATURE);
+                            result.whenComplete((createResult, ex) -> {
+                                latencies[index] = System.nanoTime() - submittedAt;
+                                if (createResult != null && createResult.isSuccess()) {
+                                    succeeded.incrementAndGet();
+                                }
+                                completed.countDown();
+                            });
+                        }
+                    }, "load-test-producer-" + producer);
+                    thread.start();
+                    producers.add(thread);
+                }
+                for (Thread producer : producers) {
+                    producer.join();
+                }
+                completed.await();
+                metrics = api.getMetrics();
+            }
+            double elapsedSeconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+            if (!print) {
+                return;
+            }
+
+            Arrays.sort(latencies);
+            System.out.printf("%-18s %6d %6d %6d %8.1f %8.1f %6d %6d %6d %6d %8s %8s %8s %8s %8s %8s%n",
+                    scenario.name, scenario.documents, succeeded.get(), scenario.documents - succeeded.get(),
+                    server.getRequestsPerSecond(), scenario.documents / elapsedSeconds,
+                    server.getViolationCount(), server.getThrottledCount(), server.getErrorCount(), metrics.getRetryCount(),
+                    millis(percentile(latencies, 0.5)), millis(percentile(latencies, 0.9)), millis(percentile(latencies, 0.99)),
+                    millis(TimeUnit.MICROSECONDS.toNanos(metrics.getRoundTripLatency().getP50Micros())),
+                    millis(TimeUnit.MICROSECONDS.toNanos(metrics.getRoundTripLatency().getP99Micros())),
+                    millis(TimeUnit.MICROSECONDS.toNanos(metrics.getRoundTripLatency().getMaxMicros())));
+        }
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1fms", nanos / 1e6);
+    }
+
+    /**
+     * Параметры сценария нагрузки.
+     */
+    private static class Scenario {
+        private final String name;
+        /**
+         * Лимит клиента и сервера, запросов в секунду
+         */
+        private int limit = 100;
+        private int documents = 500;
+        private int producers = 4;
+        /**
+         * Количество продуктов в документе
+         */
+        private int products = 10;
+        private int maxInFlight = 64;
+        /**
+         * Задержка ответа сервера в миллисекундах
+         */
+        private long latency = 20;
+        private double errorRate;
+        private double throttleRate;
+        private boolean enforceLimit;
+        private boolean adaptive;
+
+        private Scenario(String name) {
+            this.name = name;
+        }
+
+        private Scenario set(String key, String value) {
+            switch (key) {
+                case "limit" -> limit = Integer.parseInt(value);
+                case "documents" -> documents = Integer.parseInt(value);
+                case "producers" -> producers = Integer.parseInt(value);
+                case "products" -> products = Integer.parseInt(value);
+                case "maxInFlight" -> maxInFlight = Integer.parseInt(value);
+                case "latency" -> latency = Long.parseLong(value);
+                case "errorRate" -> errorRate = Double.parseDouble(value);
+                case "throttleRate" -> throttleRate = Double.parseDouble(value);
+                case "enforceLimit" -> enforceLimit = Boolean.parseBoolean(value);
+                case "adaptive" -> adaptive = Boolean.parseBoolean(value);
+                default -> throw new IllegalArgumentException("Unknown load test parameter: " + key);
+            }
+            return this;
+        }
+    }
+}
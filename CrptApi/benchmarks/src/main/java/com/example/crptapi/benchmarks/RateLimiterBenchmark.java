@@ -0,0 +1,75 @@
+package com.example.crptapi.benchmarks;
+
+import com.example.crptapi.CrptApi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость учета разрешений ограничителем при 1, 8 и 64 конкурирующих потоках.
+ * Лимит выбран так, чтобы разрешения никогда не заканчивались, и измерялся только CAS-учет, а не ожидание.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmarks.xml")
+public class RateLimiterBenchmark {
+
+    @Param({"local", "shared"})
+    private String backend;
+
+    private CrptApi.RateLimiter rateLimiter;
+    private Path sharedFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        if ("shared".equals(backend)) {
+            sharedFile = Files.createTempFile("crpt-api-limiter", ".bin");
+            rateLimiter = CrptApi.SharedTokenBucketRateLimiter.open(sharedFile, TimeUnit.NANOSECONDS, 1);
+        } else {
+            rateLimiter = new CrptApi.TokenBucketRateLimiter(TimeUnit.NANOSECONDS, 1);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (sharedFile != null) {
+            Files.deleteIfExists(sharedFile);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long reserve1Thread() {
+        return rateLimiter.reserve();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long reserve8Threads() {
+        return rateLimiter.reserve();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long reserve64Threads() {
+        return rateLimiter.reserve();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.crptapi.benchmarks;
+
+import com.example.crptapi.CrptApi;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация документа с 1, 100 и 10 000 продуктов в строку (режим STRING) и в поток (режим STREAMING):
+ * заранее написанными сериализаторами клиента и, для сравнения, сериализацией по отражению с модулем JSR-310.
+ * Перед замером проверяется, что оба способа дают одинаковый Json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmarks.xml")
+public class SerializationBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int productCount;
+
+    @Param({"precompiled", "reflective"})
+    private String serializer;
+
+    private final CountingOutputStream outputStream = new CountingOutputStream();
+    private ObjectMapper objectMapper;
+    private CrptApi.Document document;
+
+    @Setup
+    public void setUp() throws IOException {
+        document = Documents.create("benchmark", productCount);
+        ObjectMapper precompiled = CrptApi.createObjectMapper();
+        ObjectMapper reflective = new ObjectMapper()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        if (!precompiled.writeValueAsString(document).equals(reflective.writeValueAsString(document))) {
+            throw new IllegalStateException("Precompiled and reflective serializers produce different Json");
+        }
+        objectMapper = "precompiled".equals(serializer) ? precompiled : reflective;
+    }
+
+    @Benchmark
+    public String writeValueAsString() throws IOException {
+        return objectMapper.writeValueAsString(document);
+    }
+
+    @Benchmark
+    public long writeToStream() throws IOException {
+        outputStream.count = 0;
+        objectMapper.writeValue(outputStream, document);
+        return outputStream.count;
+    }
+
+    /**
+     * Поток, который только считает записанные байты.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            count += length;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.crptapi.benchmarks;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP клиент-заглушка, который вычитывает тело запроса и сразу отвечает 200 без обращения к сети.
+ * Позволяет измерить накладные расходы клиента от постановки в очередь до отправки.
+ */
+class StubHttpClient extends HttpClient {
+
+    private static final byte[] RESPONSE_BODY = "{\"value\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+    private static final HttpHeaders RESPONSE_HEADERS = HttpHeaders.of(
+            Map.of("Content-Type", List.of("application/json")), (name, value) -> true);
+
+    private final LongAdder requestBytes = new LongAdder();
+
+    /**
+     * @return Количество байт тел запросов, вычитанных с момента создания клиента
+     */
+    long getRequestBytes() {
+        return requestBytes.sum();
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) throws IOException {
+        return sendAsync(request, responseBodyHandler).join();
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+        request.bodyPublisher().ifPresent(publisher -> publisher.subscribe(new DrainingSubscriber(requestBytes)));
+
+        HttpResponse.BodySubscriber<T> bodySubscriber = responseBodyHandler.apply(new StubResponseInfo());
+        bodySubscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        bodySubscriber.onNext(List.of(ByteBuffer.wrap(RESPONSE_BODY)));
+        bodySubscriber.onComplete();
+        return bodySubscriber.getBody().toCompletableFuture().thenApply(body -> new StubResponse<>(request, body));
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler,
+                                                            HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        return sendAsync(request, responseBodyHandler);
+    }
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return Redirect.NEVER;
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return Optional.empty();
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return null;
+    }
+
+    @Override
+    public SSLParameters sslParameters() {
+        return null;
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Version version() {
+        return Version.HTTP_1_1;
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return Optional.empty();
+    }
+
+    /**
+     * Подписчик, вычитывающий тело запроса.
+     */
+    private static class DrainingSubscriber implements Flow.Subscriber<ByteBuffer> {
+        private final LongAdder requestBytes;
+
+        private DrainingSubscriber(LongAdder requestBytes) {
+            this.requestBytes = requestBytes;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            requestBytes.add(item.remaining());
+            item.position(item.limit());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    private static class StubResponseInfo implements HttpResponse.ResponseInfo {
+        @Override
+        public int statusCode() {
+            return 200;
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return RESPONSE_HEADERS;
+        }
+
+        @Override
+        public Version version() {
+            return Version.HTTP_1_1;
+        }
+    }
+
+    private record StubResponse<T>(HttpRequest request, T body) implements HttpResponse<T> {
+        @Override
+        public int statusCode() {
+            return 200;
+        }
+
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return RESPONSE_HEADERS;
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public Version version() {
+            return Version.HTTP_1_1;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.crptapi.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Локальный HTTP сервер, имитирующий API создания документов.
+ * Отвечает с заданной задержкой, случайно возвращает ошибки 500 и 429 с заданной долей
+ * и проверяет, соблюдает ли клиент лимит: запрос считается нарушением, если за скользящее окно
+ * до его прихода сервер уже получил лимит запросов. Запросы сверх лимита в окно не засчитываются.
+ * В режиме строгого лимита на них сервер отвечает 429, как настоящий API.
+ */
+class StubServer implements AutoCloseable {
+
+    private static final byte[] ERROR_BODY = "{\"code\":\"500\",\"error_message\":\"Injected error\"}"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] THROTTLED_BODY = "{\"code\":\"429\",\"error_message\":\"Too many requests\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyNanos;
+    private final double errorRate;
+    private final double throttleRate;
+    private final boolean enforceLimit;
+    private final long windowNanos;
+    /**
+     * Время прихода последних запросов в пределах лимита, кольцевой буфер
+     */
+    private final long[] arrivals;
+    private int oldestArrival;
+    private int arrivalCount;
+    private long firstArrival;
+    private long lastArrival;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder violations = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    /**
+     * @param timeUnit     Окно, на которое действует лимит
+     * @param requestLimit Лимит запросов за окно
+     * @param latency      Задержка ответа в миллисекундах
+     * @param errorRate    Доля ответов 500, от 0 до 1
+     * @param throttleRate Доля ответов 429, от 0 до 1
+     * @param enforceLimit Отвечать ли 429 на запросы сверх лимита
+     */
+    StubServer(TimeUnit timeUnit, int requestLimit, long latency, double errorRate, double throttleRate,
+               boolean enforceLimit) throws IOException {
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latency);
+        this.errorRate = errorRate;
+        this.throttleRate = throttleRate;
+        this.enforceLimit = enforceLimit;
+        this.windowNanos = timeUnit.toNanos(1);
+        this.arrivals = new long[requestLimit];
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return Адрес, по которому сервер принимает документы
+     */
+    String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+                + "/api/v3/lk/documents/create";
+    }
+
+    long getReceivedCount() {
+        return received.sum();
+    }
+
+    long getReceivedBytes() {
+        return receivedBytes.sum();
+    }
+
+    long getViolationCount() {
+        return violations.sum();
+    }
+
+    long getErrorCount() {
+        return errors.sum();
+    }
+
+    long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * @return Частота запросов от первого до последнего полученного запроса
+     */
+    synchronized double getRequestsPerSecond() {
+        long count = received.sum();
+        if (count < 2) {
+            return 0;
+        }
+        return (count - 1) * (double) TimeUnit.SECONDS.toNanos(1) / (lastArrival - firstArrival);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean overLimit = arrive(System.nanoTime());
+        try (InputStream body = exchange.getRequestBody()) {
+            receivedBytes.add(body.transferTo(OutputStream.nullOutputStream()));
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(latencyNanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+            return;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if ((enforceLimit && overLimit) || random.nextDouble() < throttleRate) {
+            throttled.increment();
+            respond(exchange, 429, THROTTLED_BODY);
+        } else if (random.nextDouble() < errorRate) {
+            errors.increment();
+            respond(exchange, 500, ERROR_BODY);
+        } else {
+            respond(exchange, 200, ("{\"value\":\"" + UUID.randomUUID() + "\"}").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Метод для учета прихода запроса в скользящем окне
+     *
+     * @param now Время прихода
+     * @return true, если запрос превышает лимит
+     */
+    private synchronized boolean arrive(long now) {
+        received.increment();
+        if (arrivalCount == 0) {
+            firstArrival = now;
+        }
+        lastArrival = now;
+        boolean overLimit = arrivalCount == arrivals.length && now - arrivals[oldestArrival] < windowNanos;
+        if (overLimit) {
+            violations.increment();
+            return true;
+        }
+        if (arrivalCount == arrivals.length) {
+            arrivals[oldestArrival] = now;
+            oldestArrival = (oldestArrival + 1) % arrivals.length;
+        } else {
+            arrivals[(oldestArrival + arrivalCount++) % arrivals.length] = now;
+        }
+        return false;
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
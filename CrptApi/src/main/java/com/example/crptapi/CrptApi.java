@@ -0,0 +1,4243 @@
+package com.example.crptapi;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.beans.ConstructorProperties;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.invoke.VarHandle;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+
+/**
+ * Класс для работы с API Честного знака.
+ * <p>
+ * Клиент пишет в лог через log4j2 с параметризованными сообщениями и сам не меняет режим логирования.
+ * Чтобы запись в лог не задерживала поток отправки, приложение может включить асинхронные логгеры:
+ * добавить зависимость {@code com.lmax:disruptor} (3.4.x для log4j2 2.x) и задать системные свойства
+ * или строки в {@code log4j2.component.properties} на своем classpath:
+ * <ul>
+ *     <li>{@code log4j2.contextSelector=org.apache.logging.log4j.core.async.AsyncLoggerContextSelector} - все логгеры асинхронные;</li>
+ *     <li>{@code log4j2.enableThreadlocals=true} и {@code log4j2.enableDirectEncoders=true} - запись в лог без создания мусора;</li>
+ *     <li>{@code log4j2.asyncQueueFullPolicy=Discard} и {@code log4j2.discardThreshold=INFO} - при переполнении буфера
+ *     события уровня INFO и ниже отбрасываются, а не блокируют поток отправки.</li>
+ * </ul>
+ * С такими настройками работают бенчмарки и нагрузочный тест из модуля benchmarks.
+ */
+public class CrptApi implements AutoCloseable {
+
+    /**
+     * Полоса, в которую попадают документы, отправленные без указания полосы.
+     */
+    public static final String DEFAULT_LANE = "default";
+
+    private static final Logger logger = LogManager.getLogger(CrptApi.class);
+    private static final AtomicInteger INSTANCE_COUNTER = new AtomicInteger();
+    private static final String DEFAULT_ENDPOINT = "**";
+    private static final int MAX_CACHED_URLS = 4096;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+
+    private final List<Endpoint> endpoints;
+    private final ConcurrentMap<String, Endpoint> routes = new ConcurrentHashMap<>();
+    private final BackpressurePolicy backpressurePolicy;
+    private final Duration submitTimeout;
+
+    private final Semaphore inFlightRequests;
+    private final int batchSerializationWindow;
+
+    private final DocumentJournal journal;
+    private final int maxJournalReplays;
+
+    private final boolean coalesceByDocId;
+    private final ConcurrentMap<String, PendingDocument> pendingDocuments = new ConcurrentHashMap<>();
+
+    private final int maxProductsPerDocument;
+    private final int maxDocumentBytes;
+    private final boolean splitOversizedDocuments;
+
+    private final BodyEncoding bodyEncoding;
+    private final BufferPool bufferPool;
+    private final int compressionThreshold;
+    private final int compressionLevel;
+
+    private final RetryPolicy retryPolicy;
+    private final ScheduledExecutorService retryScheduler;
+
+    private final double responseLogSampleRate;
+
+    private final Metrics metrics;
+    private final ObjectName mbeanName;
+
+    private final ExecutorService sendExecutor;
+    private volatile boolean closed;
+
+    public CrptApi(TimeUnit timeUnit, int requestLimit) {
+        this(timeUnit, requestLimit, new Options());
+    }
+
+    public CrptApi(TimeUnit timeUnit, int requestLimit, Options options) {
+        this(createRateLimiter(timeUnit, requestLimit, options), options);
+    }
+
+    public CrptApi(RateLimiter rateLimiter) {
+        this(rateLimiter, new Options());
+    }
+
+    /**
+     * @param rateLimiter Ограничитель частоты запросов для адресов, не указанных в {@link Options#getEndpointRateLimiters()}
+     * @param options     Настройки клиента
+     */
+    public CrptApi(RateLimiter rateLimiter, Options options) {
+        this.sendExecutor = options.getExecutionMode() == ExecutionMode.VIRTUAL_THREADS ? newVirtualThreadExecutor() : null;
+        this.inFlightRequests = new Semaphore(sendExecutor != null ? Integer.MAX_VALUE : options.getMaxInFlightRequests());
+        this.batchSerializationWindow = options.getBatchSerializationWindow();
+        if (options.getHttpClient() != null) {
+            this.httpClient = options.getHttpClient();
+        } else {
+            this.httpClient = sendExecutor != null ? HttpClient.newBuilder().executor(sendExecutor).build() : HttpClient.newHttpClient();
+        }
+        this.objectMapper = createObjectMapper();
+        List<Endpoint> registered = new ArrayList<>();
+        options.getEndpointRateLimiters().forEach((pattern, limiter) -> registered.add(new Endpoint(pattern, limiter, options)));
+        registered.add(new Endpoint(DEFAULT_ENDPOINT, rateLimiter, options));
+        this.endpoints = List.copyOf(registered);
+        this.backpressurePolicy = options.getBackpressurePolicy();
+        this.submitTimeout = options.getSubmitTimeout();
+        this.journal = openJournal(options);
+        this.maxJournalReplays = options.getMaxJournalReplays();
+        this.coalesceByDocId = options.isCoalesceByDocId();
+        this.maxProductsPerDocument = options.getMaxProductsPerDocument();
+        this.maxDocumentBytes = options.getMaxDocumentBytes();
+        this.splitOversizedDocuments = options.isSplitOversizedDocuments();
+        this.metrics = new Metrics(this::getQueueDepth,
+                () -> endpoints.stream().flatMap(endpoint -> endpoint.taskQueue.snapshot(endpoint.pattern).stream()).toList(),
+                () -> endpoints.stream().map(Endpoint::snapshot).toList());
+        this.mbeanName = options.isJmxEnabled() ? registerMBean(metrics, options.getJmxName()) : null;
+        this.bodyEncoding = options.getBodyEncoding();
+        this.bufferPool = new BufferPool(options.getBufferChunkSize(), options.getMaxPooledBuffers());
+        this.compressionThreshold = options.getCompressionThreshold();
+        this.compressionLevel = options.getCompressionLevel();
+        this.retryPolicy = options.getRetryPolicy();
+        this.responseLogSampleRate = options.getResponseLogSampleRate();
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crpt-api-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (Endpoint endpoint : endpoints) {
+            endpoint.start();
+        }
+        if (journal != null) {
+            replayJournal();
+        }
+    }
+
+    /**
+     * Метод для создания {@link ObjectMapper}, которым клиент сериализует документы.
+     * Документ, описание и продукт записываются заранее написанными сериализаторами,
+     * остальные типы - стандартной сериализацией Jackson без пустых полей.
+     *
+     * @return Настроенный {@link ObjectMapper}
+     */
+    public static ObjectMapper createObjectMapper() {
+        SimpleModule documentModule = new SimpleModule("CrptApiDocuments")
+                .addSerializer(Document.class, new DocumentSerializer())
+                .addSerializer(Description.class, new DescriptionSerializer())
+                .addSerializer(Product.class, new ProductSerializer());
+        return new ObjectMapper()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .registerModule(documentModule);
+    }
+
+    /**
+     * Метод для остановки клиента.
+     * Задачи, оставшиеся в очереди, не отправляются; документы, записанные в журнал, будут отправлены при следующем запуске.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Endpoint endpoint : endpoints) {
+            endpoint.worker.shutdownNow();
+        }
+        retryScheduler.shutdownNow();
+        if (sendExecutor != null) {
+            sendExecutor.shutdownNow();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (JMException ex) {
+                logger.warn("Failed to unregister metrics MBean {}", mbeanName, ex);
+            }
+        }
+    }
+
+    /**
+     * Метод для создания документа.
+     *
+     * @param url Путь к ресурсу
+     * @param document Документ
+     * @param signature Подпись
+     */
+    public void createDocument(String url, Document document, String signature) {
+        createDocumentAsync(url, document, signature);
+    }
+
+    /**
+     * Метод для создания документа в указанной полосе.
+     *
+     * @param url Путь к ресурсу
+     * @param document Документ
+     * @param signature Подпись
+     * @param lane Полоса из {@link Options#getLaneWeights()}
+     */
+    public void createDocument(String url, Document document, String signature, String lane) {
+        createDocumentAsync(url, document, signature, lane);
+    }
+
+    /**
+     * Метод для асинхронного создания документа.
+     * Рабочий поток ожидает только разрешения ограничителя и свободного места среди выполняющихся запросов,
+     * ответ сервера обрабатывается без блокировки рабочего потока.
+     *
+     * @param url Путь к ресурсу
+     * @param document Документ
+     * @param signature Подпись
+     * @return Результат создания документа
+     */
+    public CompletableFuture<CreateResult> createDocumentAsync(String url, Document document, String signature) {
+        return createDocumentAsync(url, document, signature, DEFAULT_LANE);
+    }
+
+    /**
+     * Метод для асинхронного создания документа в указанной полосе.
+     * Полосы делят общий лимит запросов пропорционально весам, поэтому срочные документы
+     * не ждут, пока отправится накопившаяся очередь менее важных.
+     * Документ, превышающий {@link Options#getMaxProductsPerDocument()} или {@link Options#getMaxDocumentBytes()},
+     * отправляется несколькими частями, если включено {@link Options#isSplitOversizedDocuments()}, и результат объединяет
+     * их ответы. Иначе результат завершается ошибкой {@link IllegalArgumentException}.
+     *
+     * @param url Путь к ресурсу
+     * @param document Документ
+     * @param signature Подпись
+     * @param lane Полоса из {@link Options#getLaneWeights()}
+     * @return Результат создания документа
+     * @throws IllegalArgumentException если полоса не настроена
+     */
+    public CompletableFuture<CreateResult> createDocumentAsync(String url, Document document, String signature, String lane) {
+        LaneQueue taskQueue = endpoint(url).taskQueue;
+        Lane target = taskQueue.lane(lane);
+        if (exceedsProductLimit(document)) {
+            return splitOversizedDocuments ? createChunked(url, document, signature, taskQueue, target)
+                    : metrics.track(CompletableFuture.completedFuture(rejectOversized(document, productLimit())));
+        }
+        String serialized = null;
+        if (journal != null) {
+            try {
+                serialized = objectMapper.writeValueAsString(document);
+            } catch (Exception ex) {
+                logger.error("Error creating document", ex);
+                return metrics.track(CompletableFuture.completedFuture(CreateResult.failure(document.getDocId(), ex)));
+            }
+            if (exceedsByteLimit(serialized.getBytes(StandardCharsets.UTF_8).length)) {
+                if (!splitOversizedDocuments) {
+                    return metrics.track(CompletableFuture.completedFuture(rejectOversized(document, byteLimit())));
+                }
+                if (hasProducts(document)) {
+                    return createChunked(url, document, signature, taskQueue, target);
+                }
+                logger.warn("Document {} exceeds {} bytes without products to split", document.getDocId(), maxDocumentBytes);
+            }
+        }
+        if (coalesceByDocId && document.getDocId() != null) {
+            return createCoalesced(url, document, signature, serialized, taskQueue, target);
+        }
+        CompletableFuture<CreateResult> result = metrics.track(new CompletableFuture<>());
+        long enqueuedAt = System.nanoTime();
+        if (journal == null) {
+            submitTask(taskQueue, new Task(document.getDocId(), target, 1, () -> sendDocument(url, document, signature, enqueuedAt, result),
+                    ex -> result.complete(CreateResult.failure(document.getDocId(), ex))));
+            return result;
+        }
+
+        String requestBody = journalDocument(url, document.getDocId(), signature, serialized, result);
+        if (requestBody != null) {
+            submitTask(taskQueue, new Task(document.getDocId(), target, 1,
+                    () -> sendEncoded(url, document.getDocId(), signature, EncodedBody.ofString(requestBody), enqueuedAt, result),
+                    ex -> result.complete(CreateResult.failure(document.getDocId(), ex))));
+        }
+        return result;
+    }
+
+    /**
+     * Метод для создания документа с объединением повторных отправок.
+     * Если документ с тем же идентификатором еще ждет в очереди на отправку по тому же адресу, его содержимое
+     * заменяется новым, и оба вызывающих получают результат одной отправки. Отправки по разным адресам не объединяются.
+     *
+     * @param url Путь к ресурсу
+     * @param document Документ
+     * @param signature Подпись
+     * @param serialized Документ, сериализованный для записи в журнал, или null, если журнал не ведется
+     * @param taskQueue Очередь адреса
+     * @param lane Полоса, в которую ставится первая отправка
+     * @return Результат создания документа
+     */
+    private CompletableFuture<CreateResult> createCoalesced(String url, Document document, String signature, String serialized,
+                                                            LaneQueue taskQueue, Lane lane) {
+        String docId = document.getDocId();
+        CompletableFuture<CreateResult> result = new CompletableFuture<>();
+        String journaledBody = null;
+        if (journal != null) {
+            journaledBody = journalDocument(url, docId, signature, serialized, result);
+            if (journaledBody == null) {
+                return result;
+            }
+        }
+
+        String key = pendingKey(url, docId);
+        PendingDocument update = new PendingDocument(url, document, signature, journaledBody);
+        PendingDocument pending = pendingDocuments.compute(key,
+                (id, existing) -> existing != null && existing.replaceWith(update) ? existing : update);
+        pending.result.thenAccept(result::complete);
+        if (pending != update) {
+            metrics.coalesced.increment();
+            return result;
+        }
+
+        metrics.track(pending.result).whenComplete((createResult, ex) -> pendingDocuments.remove(key, pending));
+        long enqueuedAt = System.nanoTime();
+        submitTask(taskQueue, new Task(docId, lane, 1, () -> sendPending(key, docId, pending, enqueuedAt),
+                ex -> pending.result.complete(CreateResult.failure(docId, ex))));
+        return result;
+    }
+
+    /**
+     * Метод для получения ключа ожидающего документа: отправка объединяется только с отправкой того же документа
+     * по тому же адресу
+     *
+     * @param url Путь к ресурсу
+     * @param docId Идентификатор документа
+     * @return Ключ в {@link #pendingDocuments}
+     */
+    private static String pendingKey(String url, String docId) {
+        return url + '\n' + docId;
+    }
+
+    /**
+     * Метод для проверки, что продуктов в документе больше {@link Options#getMaxProductsPerDocument()}
+     *
+     * @param document Документ
+     * @return true, если документ нужно разбить на части
+     */
+    private boolean exceedsProductLimit(Document document) {
+        return maxProductsPerDocument > 0 && hasProducts(document) && document.getProducts().size() > maxProductsPerDocument;
+    }
+
+    /**
+     * Метод для проверки, что сериализованный документ больше {@link Options#getMaxDocumentBytes()}
+     *
+     * @param size Размер сериализованного документа в байтах
+     * @return true, если документ нужно разбить на части
+     */
+    private boolean exceedsByteLimit(long size) {
+        return maxDocumentBytes > 0 && size > maxDocumentBytes;
+    }
+
+    private static boolean hasProducts(Document document) {
+        return document.getProducts() != null && !document.getProducts().isEmpty();
+    }
+
+    private String productLimit() {
+        return "maxProductsPerDocument of " + maxProductsPerDocument + " products";
+    }
+
+    private String byteLimit() {
+        return "maxDocumentBytes of " + maxDocumentBytes + " bytes";
+    }
+
+    /**
+     * Метод для отказа в отправке документа, превышающего лимит, когда разбиение на части не включено
+     *
+     * @param document Документ
+     * @param limit Описание превышенного лимита
+     * @return Результат с ошибкой {@link IllegalArgumentException}
+     */
+    private static CreateResult rejectOversized(Document document, String limit) {
+        IllegalArgumentException error = new IllegalArgumentException("Document " + document.getDocId() + " exceeds " + limit
+                + ", enable Options.splitOversizedDocuments to send it in parts");
+        logger.error("Error creating document {}: {}", document.getDocId(), error.getMessage());
+        return CreateResult.failure(document.getDocId(), error);
+    }
+
+    /**
+     * Метод для создания документа, разбитого на части.
+     * Части сериализуются параллельно в общем {@link ForkJoinPool}, пока задача ждет в очереди,
+     * и там же записываются в журнал, а затем отправляются по очереди с учетом ограничителя.
+     * Если документ уместился в одну часть, он отправляется без изменений. Иначе идентификаторы частей назначаются
+     * по схеме, описанной в {@link Options#isSplitOversizedDocuments()}.
+     *
+     * @param url Путь к ресурсу
+     * @param document Документ
+     * @param signature Подпись
+     * @param taskQueue Очередь адреса
+     * @param lane Полоса
+     * @return Объединенный результат создания частей
+     */
+    private CompletableFuture<CreateResult> createChunked(String url, Document document, String signature, LaneQueue taskQueue,
+                                                          Lane lane) {
+        String docId = document.getDocId();
+        CompletableFuture<CreateResult> result = metrics.track(new CompletableFuture<>());
+        int productCount = document.getProducts().size();
+        CompletableFuture<List<Chunk>> chunks = CompletableFuture.supplyAsync(() -> {
+            List<Chunk> parts = new ChunkTask(document, 0, productCount).invoke();
+            if (journal != null) {
+                journalChunks(url, signature, parts);
+            }
+            return parts;
+        }, ForkJoinPool.commonPool());
+        chunks.whenComplete((parts, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                logger.error("Error creating document", cause);
+                result.complete(CreateResult.failure(docId, cause));
+                return;
+            }
+            combineChunks(docId, parts, result);
+        });
+
+        int expectedChunks = maxProductsPerDocument > 0 ? (productCount + maxProductsPerDocument - 1) / maxProductsPerDocument : 1;
+        long enqueuedAt = System.nanoTime();
+        submitTask(taskQueue, new Task(docId, lane, expectedChunks, () -> sendChunks(url, signature, chunks, enqueuedAt),
+                ex -> chunks.thenAccept(parts -> {
+                    for (Chunk part : parts) {
+                        part.body.release();
+                        part.result.complete(CreateResult.failure(part.docId, ex));
+                    }
+                })));
+        return result;
+    }
+
+    /**
+     * Метод для завершения результата документа после получения ответов на все его части
+     *
+     * @param docId Идентификатор документа
+     * @param parts Части документа
+     * @param result Объединенный результат
+     */
+    private static void combineChunks(String docId, List<Chunk> parts, CompletableFuture<CreateResult> result) {
+        if (parts.size() > 1) {
+            logger.debug("Document {} split into {} chunks", docId, parts.size());
+        }
+        CompletableFuture.allOf(parts.stream().map(part -> part.result).toArray(CompletableFuture[]::new))
+                .thenRun(() -> result.complete(parts.size() == 1 ? parts.get(0).result.join()
+                        : CreateResult.combine(docId, parts.stream().map(part -> part.result.join()).toList())));
+    }
+
+    /**
+     * Метод для пакетного создания документов.
+     * Весь пакет занимает одно место в очереди. Пока отправляются первые документы,
+     * следующие сериализуются в общем пуле потоков, а сами запросы распределяются по лимиту ограничителя.
+     *
+     * @param url Путь к ресурсу
+     * @param documents Документы
+     * @param signature Подпись
+     * @return Результаты создания каждого документа в порядке передачи
+     */
+    public CompletableFuture<BatchResult> createDocuments(String url, Collection<Document> documents, String signature) {
+        return createDocuments(url, documents, signature, DEFAULT_LANE);
+    }
+
+    /**
+     * Метод для пакетного создания документов в указанной полосе.
+     * При распределении лимита между полосами пакет учитывается как столько отправок, сколько в нем документов.
+     *
+     * @param url Путь к ресурсу
+     * @param documents Документы
+     * @param signature Подпись
+     * @param lane Полоса из {@link Options#getLaneWeights()}
+     * @return Результаты создания каждого документа в порядке передачи
+     * @throws IllegalArgumentException если полоса не настроена
+     */
+    public CompletableFuture<BatchResult> createDocuments(String url, Collection<Document> documents, String signature, String lane) {
+        LaneQueue taskQueue = endpoint(url).taskQueue;
+        Lane target = taskQueue.lane(lane);
+        List<Document> batch = List.copyOf(documents);
+        List<CompletableFuture<CreateResult>> results = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            results.add(metrics.track(new CompletableFuture<>()));
+        }
+        long enqueuedAt = System.nanoTime();
+        List<String> journaledBodies = null;
+        if (journal != null) {
+            journaledBodies = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                journaledBodies.add(journalDocument(url, batch.get(i), signature, results.get(i)));
+            }
+        }
+        List<String> requestBodies = journaledBodies;
+        submitTask(taskQueue, new Task("batch of " + batch.size() + " documents", target, Math.max(1, batch.size()), () -> sendDocuments(url, batch, signature, requestBodies, enqueuedAt, results),
+                ex -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        results.get(i).complete(CreateResult.failure(batch.get(i).getDocId(), ex));
+                    }
+                }));
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> new BatchResult(results.stream().map(CompletableFuture::join).toList()));
+    }
+
+    /**
+     * Метод для получения количества задач, ожидающих отправки.
+     * Позволяет производителям заранее снижать нагрузку, не дожидаясь отказов.
+     *
+     * @return Текущая глубина очереди
+     */
+    public int getQueueDepth() {
+        return endpoints.stream().mapToInt(endpoint -> endpoint.taskQueue.size()).sum();
+    }
+
+    /**
+     * Метод для получения количества задач, ожидающих отправки в полосе
+     *
+     * @param lane Полоса
+     * @return Текущая глубина очереди полосы
+     */
+    public int getQueueDepth(String lane) {
+        return endpoints.stream().mapToInt(endpoint -> endpoint.taskQueue.size(endpoint.taskQueue.lane(lane))).sum();
+    }
+
+    /**
+     * Метод для получения согласованного среза метрик клиента.
+     * Те же метрики публикуются через JMX как {@link MetricsMXBean}.
+     *
+     * @return Срез метрик
+     */
+    public MetricsSnapshot getMetrics() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * Метод для получения количества свободных мест в очереди адреса
+     *
+     * @param url Путь к ресурсу
+     * @return Оставшаяся емкость очереди
+     */
+    public int getQueueRemainingCapacity(String url) {
+        return endpoint(url).taskQueue.remainingCapacity();
+    }
+
+    /**
+     * Метод для получения количества свободных мест в очереди адресов без собственного ограничителя
+     *
+     * @return Оставшаяся емкость очереди
+     */
+    public int getQueueRemainingCapacity() {
+        return endpoints.get(endpoints.size() - 1).taskQueue.remainingCapacity();
+    }
+
+    /**
+     * Метод для выбора адреса, к которому относится путь к ресурсу.
+     * Адреса проверяются в порядке регистрации, результат запоминается для повторных обращений.
+     *
+     * @param url Путь к ресурсу
+     * @return Адрес с собственным ограничителем и очередью
+     */
+    private Endpoint endpoint(String url) {
+        Endpoint endpoint = routes.get(url);
+        if (endpoint != null) {
+            return endpoint;
+        }
+        int query = url.indexOf('?');
+        String path = query < 0 ? url : url.substring(0, query);
+        for (Endpoint candidate : endpoints) {
+            if (candidate.matches(path)) {
+                endpoint = candidate;
+                break;
+            }
+        }
+        if (routes.size() < MAX_CACHED_URLS) {
+            routes.put(url, endpoint);
+        }
+        return endpoint;
+    }
+
+    /**
+     * Метод для отправки документа.
+     * Документ, сериализованный размер которого превышает {@link Options#getMaxDocumentBytes()}, отправляется частями
+     * или отклоняется, если разбиение не включено.
+     *
+     * @param url Путь к ресурсу
+     * @param document Документ
+     * @param signature Подпись
+     * @param enqueuedAt Момент постановки в очередь по {@link System#nanoTime()}
+     * @param result Результат, который будет завершен после получения ответа
+     */
+    private void sendDocument(String url, Document document, String signature, long enqueuedAt, CompletableFuture<CreateResult> result) {
+        EncodedBody requestBody;
+        try {
+            requestBody = encode(document);
+        } catch (Exception ex) {
+            logger.error("Error creating document", ex);
+            result.complete(CreateResult.failure(document.getDocId(), ex));
+            return;
+        }
+        if (exceedsByteLimit(requestBody.size())) {
+            if (!splitOversizedDocuments) {
+                requestBody.release();
+                result.complete(rejectOversized(document, byteLimit()));
+                return;
+            }
+            if (hasProducts(document)) {
+                requestBody.release();
+                sendSplit(url, document, signature, enqueuedAt, result);
+                return;
+            }
+            logger.warn("Document {} exceeds {} bytes without products to split", document.getDocId(), maxDocumentBytes);
+        }
+        sendEncoded(url, document.getDocId(), signature, requestBody, enqueuedAt, result);
+    }
+
+    /**
+     * Метод для отправки частями документа, размер которого выяснился только при сериализации в рабочем потоке.
+     * Части сериализуются в рабочем потоке, половины больших частей - в общем {@link ForkJoinPool}.
+     *
+     * @param url Путь к ресурсу
+     * @param document Документ
+     * @param signature Подпись
+     * @param enqueuedAt Момент постановки в очередь по {@link System#nanoTime()}
+     * @param result Объединенный результат создания частей
+     */
+    private void sendSplit(String url, Document document, String signature, long enqueuedAt, CompletableFuture<CreateResult> result) {
+        List<Chunk> parts;
+        try {
+            parts = new ChunkTask(document, 0, document.getProducts().size()).invoke();
+        } catch (RuntimeException ex) {
+            logger.error("Error creating document", ex);
+            result.complete(CreateResult.failure(document.getDocId(), ex));
+            return;
+        }
+        combineChunks(document.getDocId(), parts, result);
+        sendChunks(url, signature, parts, enqueuedAt);
+    }
+
+    /**
+     * Метод для отправки уже сериализованного документа
+     *
+     * @param url Путь к ресурсу
+     * @param docId Идентификатор документа
+     * @param signature Подпись
+     * @param requestBody Сериализованный в формат Json документ
+     * @param enqueuedAt Момент постановки в очередь по {@link System#nanoTime()}
+     * @param result Результат, который будет завершен после получения ответа
+     */
+    private void sendEncoded(String url, String docId, String signature, EncodedBody requestBody, long enqueuedAt,
+                             CompletableFuture<CreateResult> result) {
+        try {
+            sendRequest(url, docId, signature, requestBody, enqueuedAt, result);
+        } catch (InterruptedException ex) {
+            logger.warn("Waiting for rate limit interrupted", ex);
+            result.complete(CreateResult.failure(docId, ex));
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            logger.error("Error creating document", ex);
+            result.complete(CreateResult.failure(docId, ex));
+        }
+    }
+
+    /**
+     * Метод для отправки последней версии документа, ожидавшего в очереди.
+     * После этого новые отправки с тем же идентификатором ставятся в очередь отдельно.
+     *
+     * @param key Ключ ожидающего документа
+     * @param docId Идентификатор документа
+     * @param pending Ожидающий документ
+     * @param enqueuedAt Момент постановки в очередь по {@link System#nanoTime()}
+     */
+    private void sendPending(String key, String docId, PendingDocument pending, long enqueuedAt) {
+        PendingDocument latest = pending.dispatch();
+        pendingDocuments.remove(key, pending);
+        if (latest.journaledBody != null) {
+            sendEncoded(latest.url, docId, latest.signature, EncodedBody.ofString(latest.journaledBody), enqueuedAt, pending.result);
+        } else {
+            sendDocument(latest.url, latest.document, latest.signature, enqueuedAt, pending.result);
+        }
+    }
+
+    /**
+     * Метод для отправки пакета документов.
+     * Сериализация опережает отправку не более чем на {@link Options#getBatchSerializationWindow()} документов.
+     *
+     * @param url Путь к ресурсу
+     * @param documents Документы
+     * @param signature Подпись
+     * @param journaledBodies Документы, уже сериализованные при записи в журнал, или null
+     * @param enqueuedAt Момент постановки пакета в очередь по {@link System#nanoTime()}
+     * @param results Результаты, соответствующие документам
+     */
+    private void sendDocuments(String url, List<Document> documents, String signature, List<String> journaledBodies,
+                               long enqueuedAt, List<CompletableFuture<CreateResult>> results) {
+        Deque<CompletableFuture<EncodedBody>> requestBodies = new ArrayDeque<>();
+        int serialized = 0;
+        while (serialized < documents.size() && serialized < batchSerializationWindow) {
+            requestBodies.add(prepareBody(documents, journaledBodies, results, serialized++));
+        }
+
+        for (int i = 0; i < documents.size(); i++) {
+            CompletableFuture<EncodedBody> requestBody = requestBodies.poll();
+            if (serialized < documents.size()) {
+                requestBodies.add(prepareBody(documents, journaledBodies, results, serialized++));
+            }
+            if (results.get(i).isDone()) {
+                requestBody.thenAccept(body -> {
+                    if (body != null) {
+                        body.release();
+                    }
+                });
+                continue;
+            }
+            String docId = documents.get(i).getDocId();
+            try {
+                sendRequest(url, docId, signature, requestBody.join(), enqueuedAt, results.get(i));
+            } catch (InterruptedException ex) {
+                logger.warn("Waiting for rate limit interrupted", ex);
+                for (int j = i; j < documents.size(); j++) {
+                    results.get(j).complete(CreateResult.failure(documents.get(j).getDocId(), ex));
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (CompletionException ex) {
+                logger.error("Error creating document", ex.getCause());
+                results.get(i).complete(CreateResult.failure(docId, ex.getCause()));
+            } catch (Exception ex) {
+                logger.error("Error creating document", ex);
+                results.get(i).complete(CreateResult.failure(docId, ex));
+            }
+        }
+    }
+
+    /**
+     * Метод для подготовки тела запроса документа из пакета.
+     * Для документа с уже завершенным результатом, например не записанного в журнал, тело не готовится.
+     *
+     * @param documents Документы пакета
+     * @param journaledBodies Сериализованные при записи в журнал документы или null, если журнал не ведется
+     * @param results Результаты создания документов
+     * @param index Номер документа в пакете
+     * @return Тело запроса или null, если документ не отправляется
+     */
+    private CompletableFuture<EncodedBody> prepareBody(List<Document> documents, List<String> journaledBodies,
+                                                       List<CompletableFuture<CreateResult>> results, int index) {
+        if (results.get(index).isDone()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (journaledBodies != null) {
+            String journaledBody = journaledBodies.get(index);
+            return CompletableFuture.completedFuture(journaledBody == null ? null : EncodedBody.ofString(journaledBody));
+        }
+        return encodeAsync(documents.get(index));
+    }
+
+    /**
+     * Метод для отправки частей документа.
+     * Рабочий поток ожидает окончания сериализации, если части еще не готовы.
+     *
+     * @param url Путь к ресурсу
+     * @param signature Подпись
+     * @param chunks Части документа, сериализуемые в {@link ForkJoinPool}
+     * @param enqueuedAt Момент постановки в очередь по {@link System#nanoTime()}
+     */
+    private void sendChunks(String url, String signature, CompletableFuture<List<Chunk>> chunks, long enqueuedAt) {
+        List<Chunk> parts;
+        try {
+            parts = chunks.join();
+        } catch (CompletionException ex) {
+            return;
+        }
+        sendChunks(url, signature, parts, enqueuedAt);
+    }
+
+    /**
+     * Метод для отправки готовых частей документа по очереди с учетом ограничителя
+     *
+     * @param url Путь к ресурсу
+     * @param signature Подпись
+     * @param parts Части документа
+     * @param enqueuedAt Момент постановки в очередь по {@link System#nanoTime()}
+     */
+    private void sendChunks(String url, String signature, List<Chunk> parts, long enqueuedAt) {
+        for (int i = 0; i < parts.size(); i++) {
+            Chunk part = parts.get(i);
+            if (part.result.isDone()) {
+                part.body.release();
+                continue;
+            }
+            try {
+                sendRequest(url, part.docId, signature, part.body, enqueuedAt, part.result);
+            } catch (InterruptedException ex) {
+                logger.warn("Waiting for rate limit interrupted", ex);
+                for (int j = i; j < parts.size(); j++) {
+                    parts.get(j).body.release();
+                    parts.get(j).result.complete(CreateResult.failure(parts.get(j).docId, ex));
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                logger.error("Error creating document", ex);
+                part.result.complete(CreateResult.failure(part.docId, ex));
+            }
+        }
+    }
+
+    /**
+     * Метод для регистрации метрик в платформенном MBean сервере
+     *
+     * @param metrics Метрики
+     * @param name Имя экземпляра клиента или null для автоматического
+     * @return Имя зарегистрированного MBean или null, если зарегистрировать не удалось
+     */
+    private static ObjectName registerMBean(Metrics metrics, String name) {
+        String instanceName = name != null ? name : "crpt-api-" + INSTANCE_COUNTER.incrementAndGet();
+        try {
+            ObjectName objectName = new ObjectName("CrptApi:type=Metrics,name=" + ObjectName.quote(instanceName));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+            return objectName;
+        } catch (JMException ex) {
+            logger.warn("Failed to register metrics MBean {}", instanceName, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Метод для создания ограничителя по настройкам: общего для машины, если задан файл состояния, иначе локального
+     *
+     * @param timeUnit Интервал, на который действует лимит
+     * @param requestLimit Максимальное количество запросов за интервал
+     * @param options Настройки клиента
+     * @return Ограничитель
+     */
+    private static RateLimiter createRateLimiter(TimeUnit timeUnit, int requestLimit, Options options) {
+        if (options.isAdaptiveRate()) {
+            if (options.getSharedRateLimiterFile() != null) {
+                throw new IllegalArgumentException("Adaptive rate is not supported with a shared rate limiter file");
+            }
+            return new AdaptiveRateLimiter(timeUnit, requestLimit);
+        }
+        if (options.getSharedRateLimiterFile() == null) {
+            return new TokenBucketRateLimiter(timeUnit, requestLimit);
+        }
+        try {
+            return SharedTokenBucketRateLimiter.open(options.getSharedRateLimiterFile(), timeUnit, requestLimit);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open shared rate limiter", ex);
+        }
+    }
+
+    /**
+     * Метод для создания исполнителя, запускающего каждую задачу в отдельном виртуальном потоке.
+     * Виртуальные потоки доступны начиная с Java 21, поэтому исполнитель создается через отражение,
+     * и клиент продолжает собираться и работать на Java 17 в режиме {@link ExecutionMode#PLATFORM}.
+     * Отдельная сборка под Java 21 не нужна: режим включается при запуске на Java 21 или новее.
+     *
+     * @return Исполнитель на виртуальных потоках
+     * @throws IllegalStateException если среда выполнения старше Java 21
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException("ExecutionMode.VIRTUAL_THREADS requires Java 21 or newer, "
+                    + "use ExecutionMode.PLATFORM on this runtime", ex);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Failed to create virtual thread executor", ex);
+        }
+    }
+
+    /**
+     * Метод для открытия журнала, если он включен в настройках
+     *
+     * @param options Настройки клиента
+     * @return Журнал или null
+     */
+    private static DocumentJournal openJournal(Options options) {
+        if (options.getJournalDirectory() == null) {
+            return null;
+        }
+        try {
+            return DocumentJournal.open(options.getJournalDirectory(), options.getJournalSegmentSize());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open document journal", ex);
+        }
+    }
+
+    /**
+     * Метод для записи принятого документа в журнал до постановки в очередь.
+     * Запись подтверждается по правилу {@link #isSettled(CreateResult)}.
+     *
+     * @param url Путь к ресурсу
+     * @param document Документ
+     * @param signature Подпись
+     * @param result Результат создания документа
+     * @return Сериализованный документ или null, если записать его не удалось и результат уже завершен
+     */
+    private String journalDocument(String url, Document document, String signature, CompletableFuture<CreateResult> result) {
+        String requestBody;
+        try {
+            requestBody = objectMapper.writeValueAsString(document);
+        } catch (Exception ex) {
+            logger.error("Error writing document to journal", ex);
+            result.complete(CreateResult.failure(document.getDocId(), ex));
+            return null;
+        }
+        return journalDocument(url, document.getDocId(), signature, requestBody, result);
+    }
+
+    /**
+     * Метод для записи уже сериализованного документа в журнал до постановки в очередь
+     *
+     * @param url Путь к ресурсу
+     * @param docId Идентификатор документа
+     * @param signature Подпись
+     * @param requestBody Сериализованный в формат Json документ
+     * @param result Результат создания документа
+     * @return Сериализованный документ или null, если записать его не удалось и результат уже завершен
+     */
+    private String journalDocument(String url, String docId, String signature, String requestBody,
+                                   CompletableFuture<CreateResult> result) {
+        try {
+            journalBody(url, signature, docId, requestBody, result);
+            return requestBody;
+        } catch (Exception ex) {
+            logger.error("Error writing document to journal", ex);
+            result.complete(CreateResult.failure(docId, ex));
+            return null;
+        }
+    }
+
+    /**
+     * Метод для записи частей документа в журнал до постановки в очередь.
+     * Каждая часть записывается и подтверждается отдельно, при восстановлении части отправляются как отдельные документы.
+     * Часть, которую не удалось записать, завершается ошибкой и не отправляется.
+     *
+     * @param url Путь к ресурсу
+     * @param signature Подпись
+     * @param chunks Сериализованные части документа
+     */
+    private void journalChunks(String url, String signature, List<Chunk> chunks) {
+        for (Chunk chunk : chunks) {
+            try (InputStream body = chunk.body.inputStream()) {
+                journalBody(url, signature, chunk.docId, new String(body.readAllBytes(), StandardCharsets.UTF_8), chunk.result);
+            } catch (Exception ex) {
+                logger.error("Error writing document to journal", ex);
+                chunk.result.complete(CreateResult.failure(chunk.docId, ex));
+            }
+        }
+    }
+
+    /**
+     * Метод для добавления сериализованного документа в журнал с подтверждением по результату
+     *
+     * @param url Путь к ресурсу
+     * @param signature Подпись
+     * @param docId Идентификатор документа
+     * @param requestBody Сериализованный в формат Json документ
+     * @param result Результат создания документа
+     */
+    private void journalBody(String url, String signature, String docId, String requestBody, CompletableFuture<CreateResult> result) {
+        long journalId = journal.append(url, signature, docId, requestBody);
+        result.thenAccept(createResult -> {
+            if (isSettled(createResult)) {
+                journal.acknowledge(journalId);
+            }
+        });
+    }
+
+    /**
+     * Метод для проверки, что документ больше не нужно отправлять и его запись в журнале можно подтвердить:
+     * документ создан, не принят в очередь или окончательно отклонен сервером кодом 4xx, после которого запрос не повторяется
+     *
+     * @param createResult Результат создания документа
+     * @return true, если запись в журнале нужно подтвердить
+     */
+    private boolean isSettled(CreateResult createResult) {
+        int statusCode = createResult.getStatusCode();
+        return createResult.isSuccess() || createResult.isRejected()
+                || createResult.getError() == null && statusCode >= 400 && statusCode < 500
+                && !retryPolicy.getRetryableStatus().test(statusCode);
+    }
+
+    /**
+     * Метод для повторной постановки в очередь неподтвержденных документов из журнала.
+     * Задачи ставятся в полосу по умолчанию в обход политики переполнения, чтобы не потерять ни одного документа.
+     * Количество повторов сохраняется в журнале, документ сверх {@link Options#getMaxJournalReplays()} повторов
+     * удаляется из журнала без отправки.
+     */
+    private void replayJournal() {
+        List<DocumentJournal.JournalEntry> entries = journal.pendingEntries();
+        if (!entries.isEmpty()) {
+            logger.warn("Replaying {} unacknowledged documents from journal", entries.size());
+        }
+        try {
+            for (DocumentJournal.JournalEntry entry : entries) {
+                if (entry.getReplayCount() >= maxJournalReplays) {
+                    logger.error("Dropping document {} from journal after {} unsuccessful replays",
+                            entry.getDocId(), entry.getReplayCount());
+                    journal.acknowledge(entry.getId());
+                    continue;
+                }
+                journal.markReplayed(entry.getId());
+                CompletableFuture<CreateResult> result = metrics.track(new CompletableFuture<>());
+                long enqueuedAt = System.nanoTime();
+                result.thenAccept(createResult -> {
+                    if (isSettled(createResult)) {
+                        journal.acknowledge(entry.getId());
+                    }
+                });
+                LaneQueue taskQueue = endpoint(entry.getUrl()).taskQueue;
+                taskQueue.put(new Task(entry.getDocId(), taskQueue.lane(DEFAULT_LANE), 1,
+                        () -> sendEncoded(entry.getUrl(), entry.getDocId(), entry.getSignature(), EncodedBody.ofString(entry.getBody()),
+                                enqueuedAt, result),
+                        ex -> result.complete(CreateResult.failure(entry.getDocId(), ex))));
+            }
+        } catch (InterruptedException ex) {
+            logger.error("Journal replay interrupted", ex);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Метод для сериализации документа в общем пуле потоков
+     *
+     * @param document Документ
+     * @return Сериализованный в формат Json документ
+     */
+    private CompletableFuture<EncodedBody> encodeAsync(Document document) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return encode(document);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        });
+    }
+
+    /**
+     * Метод для сериализации документа в тело запроса.
+     * В режиме {@link BodyEncoding#STREAMING} генератор Jackson пишет сразу в буферы из пула, минуя промежуточную строку.
+     *
+     * @param document Документ
+     * @return Сериализованный в формат Json документ
+     * @throws IOException если документ не удалось сериализовать
+     */
+    private EncodedBody encode(Document document) throws IOException {
+        if (bodyEncoding == BodyEncoding.STRING) {
+            return EncodedBody.ofString(objectMapper.writeValueAsString(document));
+        }
+        PooledBody body = new PooledBody(bufferPool);
+        try {
+            objectMapper.writeValue(body, document);
+        } catch (IOException ex) {
+            body.release();
+            throw ex;
+        }
+        return body;
+    }
+
+    /**
+     * Метод для отправки запроса с учетом ограничений частоты и количества одновременных запросов
+     *
+     * @param url Путь к ресурсу
+     * @param docId Идентификатор документа
+     * @param signature Подпись
+     * @param requestBody Сериализованный в формат Json документ
+     * @param enqueuedAt Момент постановки в очередь по {@link System#nanoTime()}
+     * @param result Результат, который будет завершен после получения ответа
+     * @throws InterruptedException если ожидание разрешения было прервано
+     */
+    private void sendRequest(String url, String docId, String signature, EncodedBody requestBody, long enqueuedAt,
+                             CompletableFuture<CreateResult> result) throws InterruptedException {
+        result.whenComplete((createResult, ex) -> requestBody.release());
+        Endpoint endpoint = endpoint(url);
+        EncodedBody body = compressionThreshold >= 0 && requestBody.size() >= compressionThreshold
+                ? EncodedBody.gzip(requestBody, compressionLevel) : requestBody;
+        HttpRequest httpRequest = endpoint.createHttpRequest(url, signature, body);
+
+        inFlightRequests.acquire();
+        long limiterWaitStart = System.nanoTime();
+        try {
+            endpoint.rateLimiter.acquire();
+        } catch (InterruptedException ex) {
+            inFlightRequests.release();
+            throw ex;
+        }
+        long sendStart = System.nanoTime();
+        metrics.limiterWait.record(sendStart - limiterWaitStart);
+        metrics.enqueueToSend.record(sendStart - enqueuedAt);
+
+        sendAttempt(httpRequest, endpoint.rateLimiter, docId, 1, result);
+    }
+
+    /**
+     * Метод для выполнения попытки отправки.
+     * Место среди выполняющихся запросов удерживается до завершения последней попытки.
+     *
+     * @param httpRequest HTTP запрос
+     * @param rateLimiter Ограничитель адреса
+     * @param docId Идентификатор документа
+     * @param attempt Номер попытки, начиная с 1
+     * @param result Результат, который будет завершен после получения окончательного ответа
+     */
+    private void sendAttempt(HttpRequest httpRequest, RateLimiter rateLimiter, String docId, int attempt,
+                             CompletableFuture<CreateResult> result) {
+        boolean sampled = responseLogSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < responseLogSampleRate;
+        JsonFactory jsonFactory = objectMapper.getFactory();
+        long sendStart = System.nanoTime();
+        CompletableFuture<HttpResponse<DecodedResponse>> sent;
+        try {
+            sent = httpClient.sendAsync(httpRequest, responseInfo -> new ResponseDecoder(jsonFactory,
+                    sampled || !CreateResult.isSuccessStatus(responseInfo.statusCode())));
+        } catch (RuntimeException ex) {
+            inFlightRequests.release();
+            logger.error("Error sending document {}", docId, ex);
+            result.complete(CreateResult.failure(docId, ex));
+            return;
+        }
+        sent.whenComplete((response, ex) -> {
+            long roundTrip = System.nanoTime() - sendStart;
+            metrics.roundTrip.record(roundTrip);
+            rateLimiter.onResponse(response != null ? response.statusCode() : 0, sendStart, roundTrip);
+            long retryDelay = retryPolicy.retryDelayNanos(attempt, response, ex);
+            if (retryDelay >= 0) {
+                metrics.retries.increment();
+                logger.warn("Retrying document {} after attempt {} in {} ms", docId, attempt,
+                        TimeUnit.NANOSECONDS.toMillis(retryDelay));
+                scheduleRetry(() -> retry(httpRequest, rateLimiter, docId, attempt + 1, result), retryDelay, docId, result);
+                return;
+            }
+            inFlightRequests.release();
+            if (ex != null) {
+                logger.error("Error creating document {}", docId, ex);
+                result.complete(CreateResult.failure(docId, ex));
+                return;
+            }
+            DecodedResponse decoded = response.body();
+            CreateResult createResult = CreateResult.response(docId, response.statusCode(), decoded.value, decoded.body);
+            if (!createResult.isSuccess()) {
+                logger.error("Error response for document {}: {} {}", docId, response.statusCode(), decoded.body);
+            } else if (decoded.error != null) {
+                logger.warn("Failed to decode response for document {}: {}", docId, decoded.error.getMessage());
+            } else if (sampled) {
+                logger.info("Response for document {}: {}", docId, decoded.body);
+            } else {
+                logger.debug("Document {} created", docId);
+            }
+            result.complete(createResult);
+        });
+    }
+
+    /**
+     * Метод для повторной отправки запроса после паузы.
+     * Повтор расходует разрешение ограничителя наравне с новыми запросами: разрешение резервируется без блокировки,
+     * и отправка откладывается до назначенного ограничителем момента.
+     *
+     * @param httpRequest HTTP запрос
+     * @param rateLimiter Ограничитель адреса
+     * @param docId Идентификатор документа
+     * @param attempt Номер попытки
+     * @param result Результат создания документа
+     */
+    private void retry(HttpRequest httpRequest, RateLimiter rateLimiter, String docId, int attempt,
+                       CompletableFuture<CreateResult> result) {
+        long delay = rateLimiter.reserve() - System.nanoTime();
+        metrics.limiterWait.record(Math.max(0, delay));
+        if (delay > 0) {
+            scheduleRetry(() -> sendAttempt(httpRequest, rateLimiter, docId, attempt, result), delay, docId, result);
+        } else {
+            sendAttempt(httpRequest, rateLimiter, docId, attempt, result);
+        }
+    }
+
+    /**
+     * Метод для планирования шага повторной отправки.
+     * Если клиент уже закрыт и планировщик отказал, разрешение на одновременный запрос освобождается,
+     * а результат завершается ошибкой. Ошибка не является отказом в постановке в очередь,
+     * поэтому документ остается в журнале для отправки при следующем запуске.
+     *
+     * @param action Шаг повторной отправки
+     * @param delayNanos Пауза в наносекундах
+     * @param docId Идентификатор документа
+     * @param result Результат создания документа
+     */
+    private void scheduleRetry(Runnable action, long delayNanos, String docId, CompletableFuture<CreateResult> result) {
+        try {
+            retryScheduler.schedule(action, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException ex) {
+            inFlightRequests.release();
+            logger.error("Cannot retry document {}, client is closed", docId);
+            result.complete(CreateResult.failure(docId, new IllegalStateException("Client closed before retrying document " + docId, ex)));
+        }
+    }
+
+    /**
+     * Метод для добавления задачи в очередь с учетом политики переполнения
+     *
+     * @param taskQueue Очередь адреса
+     * @param task Задача
+     */
+    private void submitTask(LaneQueue taskQueue, Task task) {
+        try {
+            switch (backpressurePolicy) {
+                case BLOCK -> taskQueue.put(task);
+                case REJECT -> {
+                    if (!taskQueue.offer(task)) {
+                        task.reject("Task queue is full");
+                    }
+                }
+                case DROP_OLDEST -> {
+                    Task dropped = taskQueue.offerDroppingOldest(task);
+                    if (dropped == task) {
+                        task.reject("Task queue is full and has no task to drop");
+                    } else if (dropped != null) {
+                        logger.warn("Task queue is full, dropping {}", dropped.name);
+                        dropped.reject("Dropped from full task queue");
+                    }
+                }
+                case TIMEOUT -> {
+                    if (!taskQueue.offer(task, submitTimeout.toNanos())) {
+                        task.reject("Timed out waiting for space in task queue");
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            logger.error("Task submission interrupted", ex);
+            task.reject("Task submission interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) {
+        CrptApi api = new CrptApi(TimeUnit.SECONDS, 10); // Пример: 10 запросов в секунду.
+        String url = "https://ismp.crpt.ru/api/v3/lk/documents/create";
+
+        Document document = new Document();
+        document.setDocId("123456");
+        document.setDocStatus("CREATED");
+
+        String signature = "signature";
+
+        api.createDocument(url, document, signature);
+    }
+
+    /**
+     * Класс с информацией о документе.
+     */
+    @Getter
+    @Setter
+    public static class Document {
+        private Description description;
+        private List<Product> products;
+        private String docId;
+        private String docStatus;
+        private String docType;
+        private boolean importRequest;
+        private String ownerInn;
+        private String participantInn;
+        private String producerInn;
+        private LocalDate productionDate;
+        private String productionType;
+        private LocalDate regDate;
+        private String regNumber;
+    }
+
+    /**
+     * Класс с информацией по описанию.
+     */
+    @Getter
+    @Setter
+    public static class Description {
+        private String participantInn;
+    }
+
+    /**
+     * Класс с информацией о продукте.
+     */
+    @Getter
+    @Setter
+    public static class Product {
+        private String certificateDocument;
+        private LocalDate certificateDocumentDate;
+        private String certificate_DocumentNumber;
+        private String ownerInn;
+        private String producerInn;
+        private LocalDate productionDate;
+        private String tnvedCode;
+        private String uitCode;
+        private String uituCode;
+    }
+
+    /**
+     * Сериализатор документа без отражения.
+     * Имена полей закодированы заранее, пустые поля пропускаются, как при {@link JsonInclude.Include#NON_NULL},
+     * даты записываются в формате ISO-8601.
+     */
+    private static class DocumentSerializer extends StdSerializer<Document> {
+        private static final SerializedString DESCRIPTION = new SerializedString("description");
+        private static final SerializedString PRODUCTS = new SerializedString("products");
+        private static final SerializedString DOC_ID = new SerializedString("docId");
+        private static final SerializedString DOC_STATUS = new SerializedString("docStatus");
+        private static final SerializedString DOC_TYPE = new SerializedString("docType");
+        private static final SerializedString IMPORT_REQUEST = new SerializedString("importRequest");
+        private static final SerializedString OWNER_INN = new SerializedString("ownerInn");
+        private static final SerializedString PARTICIPANT_INN = new SerializedString("participantInn");
+        private static final SerializedString PRODUCER_INN = new SerializedString("producerInn");
+        private static final SerializedString PRODUCTION_DATE = new SerializedString("productionDate");
+        private static final SerializedString PRODUCTION_TYPE = new SerializedString("productionType");
+        private static final SerializedString REG_DATE = new SerializedString("regDate");
+        private static final SerializedString REG_NUMBER = new SerializedString("regNumber");
+
+        private final DescriptionSerializer descriptionSerializer = new DescriptionSerializer();
+        private final ProductSerializer productSerializer = new ProductSerializer();
+
+        private DocumentSerializer() {
+            super(Document.class);
+        }
+
+        @Override
+        public void serialize(Document document, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(document);
+            if (document.getDescription() != null) {
+                generator.writeFieldName(DESCRIPTION);
+                descriptionSerializer.serialize(document.getDescription(), generator, provider);
+            }
+            if (document.getProducts() != null) {
+                generator.writeFieldName(PRODUCTS);
+                generator.writeStartArray(document.getProducts(), document.getProducts().size());
+                for (Product product : document.getProducts()) {
+                    if (product == null) {
+                        generator.writeNull();
+                    } else {
+                        productSerializer.serialize(product, generator, provider);
+                    }
+                }
+                generator.writeEndArray();
+            }
+            writeString(generator, DOC_ID, document.getDocId());
+            writeString(generator, DOC_STATUS, document.getDocStatus());
+            writeString(generator, DOC_TYPE, document.getDocType());
+            generator.writeFieldName(IMPORT_REQUEST);
+            generator.writeBoolean(document.isImportRequest());
+            writeString(generator, OWNER_INN, document.getOwnerInn());
+            writeString(generator, PARTICIPANT_INN, document.getParticipantInn());
+            writeString(generator, PRODUCER_INN, document.getProducerInn());
+            writeDate(generator, PRODUCTION_DATE, document.getProductionDate());
+            writeString(generator, PRODUCTION_TYPE, document.getProductionType());
+            writeDate(generator, REG_DATE, document.getRegDate());
+            writeString(generator, REG_NUMBER, document.getRegNumber());
+            generator.writeEndObject();
+        }
+
+        /**
+         * Метод для записи строкового поля, если оно заполнено
+         */
+        static void writeString(JsonGenerator generator, SerializedString name, String value) throws IOException {
+            if (value != null) {
+                generator.writeFieldName(name);
+                generator.writeString(value);
+            }
+        }
+
+        /**
+         * Метод для записи даты в формате yyyy-MM-dd, если она заполнена.
+         * Дата собирается из чисел без форматтера, годы вне диапазона 0-9999 записываются через {@link LocalDate#toString()}.
+         */
+        static void writeDate(JsonGenerator generator, SerializedString name, LocalDate value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            generator.writeFieldName(name);
+            int year = value.getYear();
+            if (year < 0 || year > 9999) {
+                generator.writeString(value.toString());
+                return;
+            }
+            char[] chars = new char[10];
+            writeDigits(chars, 0, year, 4);
+            chars[4] = '-';
+            writeDigits(chars, 5, value.getMonthValue(), 2);
+            chars[7] = '-';
+            writeDigits(chars, 8, value.getDayOfMonth(), 2);
+            generator.writeString(chars, 0, chars.length);
+        }
+
+        private static void writeDigits(char[] chars, int offset, int value, int width) {
+            for (int i = offset + width - 1; i >= offset; i--) {
+                chars[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+    }
+
+    /**
+     * Сериализатор описания документа без отражения.
+     */
+    private static class DescriptionSerializer extends StdSerializer<Description> {
+        private static final SerializedString PARTICIPANT_INN = new SerializedString("participantInn");
+
+        private DescriptionSerializer() {
+            super(Description.class);
+        }
+
+        @Override
+        public void serialize(Description description, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(description);
+            DocumentSerializer.writeString(generator, PARTICIPANT_INN, description.getParticipantInn());
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Сериализатор продукта без отражения.
+     * Поле {@code certificate_DocumentNumber} сохраняет имя, которое давала сериализация по геттерам.
+     */
+    private static class ProductSerializer extends StdSerializer<Product> {
+        private static final SerializedString CERTIFICATE_DOCUMENT = new SerializedString("certificateDocument");
+        private static final SerializedString CERTIFICATE_DOCUMENT_DATE = new SerializedString("certificateDocumentDate");
+        private static final SerializedString CERTIFICATE_DOCUMENT_NUMBER = new SerializedString("certificate_DocumentNumber");
+        private static final SerializedString OWNER_INN = new SerializedString("ownerInn");
+        private static final SerializedString PRODUCER_INN = new SerializedString("producerInn");
+        private static final SerializedString PRODUCTION_DATE = new SerializedString("productionDate");
+        private static final SerializedString TNVED_CODE = new SerializedString("tnvedCode");
+        private static final SerializedString UIT_CODE = new SerializedString("uitCode");
+        private static final SerializedString UITU_CODE = new SerializedString("uituCode");
+
+        private ProductSerializer() {
+            super(Product.class);
+        }
+
+        @Override
+        public void serialize(Product product, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(product);
+            DocumentSerializer.writeString(generator, CERTIFICATE_DOCUMENT, product.getCertificateDocument());
+            DocumentSerializer.writeDate(generator, CERTIFICATE_DOCUMENT_DATE, product.getCertificateDocumentDate());
+            DocumentSerializer.writeString(generator, CERTIFICATE_DOCUMENT_NUMBER, product.getCertificate_DocumentNumber());
+            DocumentSerializer.writeString(generator, OWNER_INN, product.getOwnerInn());
+            DocumentSerializer.writeString(generator, PRODUCER_INN, product.getProducerInn());
+            DocumentSerializer.writeDate(generator, PRODUCTION_DATE, product.getProductionDate());
+            DocumentSerializer.writeString(generator, TNVED_CODE, product.getTnvedCode());
+            DocumentSerializer.writeString(generator, UIT_CODE, product.getUitCode());
+            DocumentSerializer.writeString(generator, UITU_CODE, product.getUituCode());
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Класс с настройками клиента.
+     */
+    @Getter
+    @Setter
+    public static class Options {
+        /**
+         * Максимальное количество одновременно выполняющихся запросов.
+         * Для полного использования лимита должно быть не меньше, чем лимит запросов в секунду, умноженный на время ответа сервера.
+         * В режиме {@link ExecutionMode#VIRTUAL_THREADS} не применяется.
+         */
+        private int maxInFlightRequests = 64;
+        /**
+         * Максимальное количество задач в очереди на отправку. Должно быть положительным.
+         */
+        private int queueCapacity = 10_000;
+        /**
+         * Поведение при заполненной очереди.
+         */
+        private BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+        /**
+         * Время ожидания места в очереди для политики {@link BackpressurePolicy#TIMEOUT}.
+         */
+        private Duration submitTimeout = Duration.ofSeconds(1);
+        /**
+         * На сколько документов сериализация пакета может опережать отправку.
+         */
+        private int batchSerializationWindow = 32;
+        /**
+         * Каталог журнала принятых документов. Если не задан, журнал не ведется.
+         */
+        private Path journalDirectory;
+        /**
+         * Размер одного сегмента журнала в байтах.
+         */
+        private int journalSegmentSize = 64 * 1024 * 1024;
+        /**
+         * Сколько раз неподтвержденный документ отправляется повторно при открытии журнала.
+         * Документ, не доставленный за это количество запусков, удаляется из журнала с записью в лог ошибок.
+         */
+        private int maxJournalReplays = 5;
+        /**
+         * Политика повторной отправки при временных ошибках.
+         */
+        private RetryPolicy retryPolicy = new RetryPolicy();
+        /**
+         * Способ сериализации тела запроса.
+         */
+        private BodyEncoding bodyEncoding = BodyEncoding.STREAMING;
+        /**
+         * Размер буфера из пула для режима {@link BodyEncoding#STREAMING}.
+         */
+        private int bufferChunkSize = 8 * 1024;
+        /**
+         * Максимальное количество свободных буферов, хранящихся в пуле.
+         */
+        private int maxPooledBuffers = 1024;
+        /**
+         * Размер тела запроса в байтах, начиная с которого оно сжимается gzip. Отрицательное значение отключает сжатие.
+         * Тело сжимается по мере отправки, поэтому сжатая копия целиком в памяти не хранится.
+         */
+        private int compressionThreshold = -1;
+        /**
+         * Уровень сжатия {@link Deflater}, от 1 (быстрее) до 9 (сильнее).
+         */
+        private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        /**
+         * Доля успешных ответов, тело которых сохраняется в {@link CreateResult#getBody()} и пишется в лог.
+         * Тело ответа с ошибкой сохраняется всегда.
+         */
+        private double responseLogSampleRate = 0.0;
+        /**
+         * Способ выполнения задач из очереди.
+         */
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+        /**
+         * Файл состояния ограничителя, общего для всех процессов на машине. Если не задан, ограничитель локальный.
+         */
+        private Path sharedRateLimiterFile;
+        /**
+         * Подстраивать ли частоту запросов по ответам сервера, см. {@link AdaptiveRateLimiter}.
+         * Лимит, переданный в конструктор, становится верхней границей.
+         */
+        private boolean adaptiveRate;
+        /**
+         * Публиковать ли метрики клиента через JMX.
+         */
+        private boolean jmxEnabled = true;
+        /**
+         * Имя экземпляра клиента в JMX. Если не задано, формируется автоматически.
+         */
+        private String jmxName;
+        /**
+         * HTTP клиент для отправки запросов. Если не задан, создается клиент по умолчанию.
+         */
+        private HttpClient httpClient;
+        /**
+         * Объединять ли отправки документов с одинаковым docId по одному адресу, пока первая еще ждет в очереди.
+         * Применяется к {@link CrptApi#createDocumentAsync} и {@link CrptApi#createDocument}, но не к пакетам.
+         */
+        private boolean coalesceByDocId;
+        /**
+         * Максимальное количество продуктов в одном запросе, 0 - не ограничивать. Документ с большим количеством продуктов
+         * разбивается на части, если включено {@link #isSplitOversizedDocuments()}, иначе отклоняется.
+         * Применяется к {@link CrptApi#createDocumentAsync} и {@link CrptApi#createDocument}, но не к пакетам,
+         * разбиваемые документы не объединяются по {@link #isCoalesceByDocId()}.
+         */
+        private int maxProductsPerDocument;
+        /**
+         * Максимальный размер тела запроса в байтах до сжатия, 0 - не ограничивать. Документ, превышающий его,
+         * разбивается на части, если включено {@link #isSplitOversizedDocuments()}, иначе отклоняется.
+         * Часть, превышающая размер, делится пополам.
+         * Размер проверяется при сериализации документа перед отправкой, а при включенном журнале - перед записью в журнал.
+         * Документ в пределах размера отправляется обычным путем, в том числе с объединением по {@link #isCoalesceByDocId()}.
+         * Применяется к {@link CrptApi#createDocumentAsync} и {@link CrptApi#createDocument}, но не к пакетам.
+         */
+        private int maxDocumentBytes;
+        /**
+         * Разбивать ли документ, превышающий {@link #getMaxProductsPerDocument()} или {@link #getMaxDocumentBytes()},
+         * на части. Каждая часть отправляется как отдельный документ с теми же реквизитами и идентификатором
+         * из идентификатора документа, дефиса и номера первого продукта части, считая с 0:
+         * документ "doc" из 250 продуктов с лимитом 100 отправляется как "doc-0", "doc-100" и "doc-200".
+         * Получатель должен принимать такие идентификаторы. Повторная отправка того же документа дает те же части.
+         * Если выключено, документ сверх лимита не отправляется, а его результат завершается ошибкой
+         * {@link IllegalArgumentException}.
+         */
+        private boolean splitOversizedDocuments;
+        /**
+         * Веса полос очереди. Полосы делят лимит запросов пропорционально весам.
+         * Полоса {@link CrptApi#DEFAULT_LANE} добавляется с весом 1, если не указана.
+         * В режиме {@link ExecutionMode#VIRTUAL_THREADS} задачи забираются из очереди сразу,
+         * и веса влияют только на порядок, в котором задачи начинают ожидать ограничитель.
+         */
+        private Map<String, Integer> laneWeights = Map.of(DEFAULT_LANE, 1);
+        /**
+         * Максимальное время ожидания задачи в полосе, после которого она отправляется вне очереди.
+         */
+        private Duration maxLaneWait = Duration.ofSeconds(30);
+        /**
+         * Собственные ограничители для адресов API с отдельными квотами, например создания документов,
+         * запроса статуса и получения чека. Ключ - шаблон пути к ресурсу без параметров запроса,
+         * где {@code *} соответствует части сегмента пути, а {@code **} - любой подстроке.
+         * Шаблоны проверяются в порядке итерации, поэтому для нескольких шаблонов следует передавать {@link LinkedHashMap}.
+         * У каждого адреса своя очередь и рабочий поток, остальные адреса используют ограничитель из конструктора.
+         */
+        private Map<String, RateLimiter> endpointRateLimiters = Map.of();
+    }
+
+    /**
+     * Способ выполнения задач из очереди.
+     */
+    public enum ExecutionMode {
+        /**
+         * Задачи выполняются по очереди одним платформенным потоком.
+         */
+        PLATFORM,
+        /**
+         * Каждая задача выполняется в своем виртуальном потоке, ожидание ограничителя почти ничего не стоит,
+         * и ограничитель остается единственным регулятором частоты. Требует Java 21 или новее.
+         */
+        VIRTUAL_THREADS
+    }
+
+    /**
+     * Способ сериализации тела запроса.
+     */
+    public enum BodyEncoding {
+        /**
+         * Сериализация в строку, байты которой передаются HTTP клиенту целиком.
+         */
+        STRING,
+        /**
+         * Запись генератором Jackson в буферы из пула, которые передаются HTTP клиенту без копирования в строку.
+         */
+        STREAMING
+    }
+
+    /**
+     * Сериализованное тело запроса.
+     */
+    private interface EncodedBody {
+
+        /**
+         * Метод для получения источника тела запроса, каждая попытка отправки подписывается на него заново
+         *
+         * @return Источник тела запроса
+         */
+        HttpRequest.BodyPublisher publisher();
+
+        /**
+         * Метод для освобождения ресурсов после завершения последней попытки
+         */
+        void release();
+
+        /**
+         * @return Размер тела запроса в байтах
+         */
+        long size();
+
+        /**
+         * @return Поток для чтения тела запроса без копирования
+         */
+        InputStream inputStream();
+
+        /**
+         * @return Значение заголовка Content-Encoding или null, если тело не сжато
+         */
+        default String contentEncoding() {
+            return null;
+        }
+
+        static EncodedBody ofString(String body) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            return new EncodedBody() {
+                @Override
+                public HttpRequest.BodyPublisher publisher() {
+                    return HttpRequest.BodyPublishers.ofByteArray(bytes);
+                }
+
+                @Override
+                public void release() {
+                }
+
+                @Override
+                public long size() {
+                    return bytes.length;
+                }
+
+                @Override
+                public InputStream inputStream() {
+                    return new ByteArrayInputStream(bytes);
+                }
+            };
+        }
+
+        /**
+         * Метод для сжатия тела запроса в формат gzip.
+         * Сжатие выполняется при каждой попытке отправки по мере чтения тела HTTP клиентом:
+         * перед данными, сжатыми {@link DeflaterInputStream} без собственного заголовка, выдается заголовок gzip,
+         * а после них - контрольная сумма и размер исходных данных.
+         *
+         * @param body Тело запроса
+         * @param level Уровень сжатия
+         * @return Сжатое тело запроса
+         */
+        static EncodedBody gzip(EncodedBody body, int level) {
+            return new EncodedBody() {
+                @Override
+                public HttpRequest.BodyPublisher publisher() {
+                    return HttpRequest.BodyPublishers.ofInputStream(this::inputStream);
+                }
+
+                @Override
+                public void release() {
+                    body.release();
+                }
+
+                @Override
+                public long size() {
+                    return -1;
+                }
+
+                @Override
+                public InputStream inputStream() {
+                    CRC32 crc = new CRC32();
+                    Deflater deflater = new Deflater(level, true);
+                    InputStream deflated = new DeflaterInputStream(new CheckedInputStream(body.inputStream(), crc), deflater, 8 * 1024) {
+                        @Override
+                        public void close() throws IOException {
+                            try {
+                                super.close();
+                            } finally {
+                                deflater.end();
+                            }
+                        }
+                    };
+                    InputStream trailer = new InputStream() {
+                        private ByteBuffer bytes;
+
+                        @Override
+                        public int read() {
+                            if (bytes == null) {
+                                bytes = ByteBuffer.allocate(2 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                                        .putInt((int) crc.getValue())
+                                        .putInt((int) body.size())
+                                        .flip();
+                            }
+                            return bytes.hasRemaining() ? bytes.get() & 0xFF : -1;
+                        }
+                    };
+                    return new SequenceInputStream(Collections.enumeration(List.of(new ByteArrayInputStream(GZIP_HEADER), deflated, trailer)));
+                }
+
+                @Override
+                public String contentEncoding() {
+                    return "gzip";
+                }
+            };
+        }
+    }
+
+    /**
+     * Пул буферов одинакового размера.
+     */
+    private static class BufferPool {
+        private final int chunkSize;
+        private final int maxPooled;
+        private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pooled = new AtomicInteger();
+
+        private BufferPool(int chunkSize, int maxPooled) {
+            this.chunkSize = chunkSize;
+            this.maxPooled = maxPooled;
+        }
+
+        private ByteBuffer acquire() {
+            ByteBuffer buffer = buffers.poll();
+            if (buffer == null) {
+                return ByteBuffer.allocate(chunkSize);
+            }
+            pooled.decrementAndGet();
+            return buffer;
+        }
+
+        private void release(ByteBuffer buffer) {
+            if (pooled.incrementAndGet() > maxPooled) {
+                pooled.decrementAndGet();
+                return;
+            }
+            buffer.clear();
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Тело запроса, записанное в буферы из пула.
+     * Для HTTP клиента буферы публикуются как представления только для чтения, без копирования данных.
+     */
+    private static class PooledBody extends OutputStream implements EncodedBody {
+        private final BufferPool pool;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private ByteBuffer current;
+        private long length;
+        private volatile boolean released;
+
+        private PooledBody(BufferPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void write(int b) {
+            nextChunkIfFull();
+            current.put((byte) b);
+            length++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) {
+            while (count > 0) {
+                nextChunkIfFull();
+                int written = Math.min(count, current.remaining());
+                current.put(bytes, offset, written);
+                offset += written;
+                count -= written;
+                length += written;
+            }
+        }
+
+        private void nextChunkIfFull() {
+            if (current == null || !current.hasRemaining()) {
+                current = pool.acquire();
+                chunks.add(current);
+            }
+        }
+
+        @Override
+        public HttpRequest.BodyPublisher publisher() {
+            if (length == 0) {
+                return HttpRequest.BodyPublishers.noBody();
+            }
+            return HttpRequest.BodyPublishers.fromPublisher(
+                    subscriber -> subscriber.onSubscribe(new ChunkSubscription(subscriber)), length);
+        }
+
+        @Override
+        public void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            chunks.forEach(pool::release);
+        }
+
+        @Override
+        public long size() {
+            return length;
+        }
+
+        @Override
+        public InputStream inputStream() {
+            if (released) {
+                throw new IllegalStateException("Request body already released");
+            }
+            List<InputStream> streams = new ArrayList<>(chunks.size());
+            for (ByteBuffer chunk : chunks) {
+                streams.add(new ByteArrayInputStream(chunk.array(), chunk.arrayOffset(), chunk.position()));
+            }
+            return new SequenceInputStream(Collections.enumeration(streams));
+        }
+
+        /**
+         * Подписка, выдающая буферы тела запроса по мере запроса подписчика.
+         */
+        private class ChunkSubscription implements Flow.Subscription {
+            private final Flow.Subscriber<? super ByteBuffer> subscriber;
+            private final AtomicLong demand = new AtomicLong();
+            private final AtomicInteger wip = new AtomicInteger();
+            private int index;
+            private volatile boolean done;
+
+            private ChunkSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+                this.subscriber = subscriber;
+            }
+
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    done = true;
+                    subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                    return;
+                }
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                done = true;
+            }
+
+            private void drain() {
+                if (wip.getAndIncrement() != 0) {
+                    return;
+                }
+                do {
+                    while (!done && demand.get() > 0 && index < chunks.size()) {
+                        if (released) {
+                            done = true;
+                            subscriber.onError(new IllegalStateException("Request body already released"));
+                            return;
+                        }
+                        ByteBuffer chunk = chunks.get(index++);
+                        demand.decrementAndGet();
+                        subscriber.onNext(chunk.duplicate().flip().asReadOnlyBuffer());
+                    }
+                    if (!done && index == chunks.size()) {
+                        done = true;
+                        subscriber.onComplete();
+                    }
+                } while (wip.decrementAndGet() != 0);
+            }
+        }
+    }
+
+    /**
+     * Класс с политикой повторной отправки.
+     * Пауза перед повтором растет экспоненциально и случайно уменьшается на долю {@code jitter},
+     * чтобы клиенты не повторяли запросы одновременно. Если сервер вернул заголовок Retry-After,
+     * пауза не меньше указанной в нем.
+     */
+    @Getter
+    @Setter
+    public static class RetryPolicy {
+        /**
+         * Максимальное количество попыток, включая первую.
+         */
+        private int maxAttempts = 5;
+        private Duration initialBackoff = Duration.ofMillis(200);
+        private Duration maxBackoff = Duration.ofSeconds(30);
+        private double multiplier = 2.0;
+        /**
+         * Доля паузы, на которую она может быть случайно уменьшена, от 0 до 1.
+         */
+        private double jitter = 0.5;
+        /**
+         * Коды ответа, после которых запрос повторяется.
+         */
+        private IntPredicate retryableStatus = status -> status == 429 || status == 500 || status == 502
+                || status == 503 || status == 504;
+        /**
+         * Исключения, после которых запрос повторяется.
+         */
+        private Predicate<Throwable> retryableException = ex -> ex instanceof IOException;
+
+        /**
+         * Метод для создания политики без повторов
+         *
+         * @return Политика с одной попыткой
+         */
+        public static RetryPolicy none() {
+            RetryPolicy retryPolicy = new RetryPolicy();
+            retryPolicy.setMaxAttempts(1);
+            return retryPolicy;
+        }
+
+        /**
+         * Метод для расчета паузы перед следующей попыткой
+         *
+         * @param attempt Номер завершившейся попытки
+         * @param response Ответ сервера или null
+         * @param error Исключение или null
+         * @return Пауза в наносекундах или -1, если запрос повторять не нужно
+         */
+        long retryDelayNanos(int attempt, HttpResponse<?> response, Throwable error) {
+            if (attempt >= maxAttempts) {
+                return -1;
+            }
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                return retryableException.test(cause) ? backoffNanos(attempt) : -1;
+            }
+            if (!retryableStatus.test(response.statusCode())) {
+                return -1;
+            }
+            return Math.max(backoffNanos(attempt), retryAfterNanos(response));
+        }
+
+        private long backoffNanos(int attempt) {
+            double backoff = Math.min(initialBackoff.toNanos() * Math.pow(multiplier, attempt - 1), maxBackoff.toNanos());
+            return (long) (backoff * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+        }
+
+        /**
+         * Метод для разбора заголовка Retry-After в виде количества секунд или даты HTTP
+         */
+        private static long retryAfterNanos(HttpResponse<?> response) {
+            return response.headers().firstValue("Retry-After").map(value -> {
+                try {
+                    return TimeUnit.SECONDS.toNanos(Long.parseLong(value.trim()));
+                } catch (NumberFormatException ex) {
+                    try {
+                        ZonedDateTime retryAt = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                        return Math.max(0, Duration.between(ZonedDateTime.now(), retryAt).toNanos());
+                    } catch (DateTimeParseException parseException) {
+                        return 0L;
+                    }
+                }
+            }).orElse(0L);
+        }
+    }
+
+    /**
+     * Политика поведения при заполненной очереди задач.
+     */
+    public enum BackpressurePolicy {
+        /**
+         * Блокировать вызывающий поток до появления места.
+         */
+        BLOCK,
+        /**
+         * Сразу завершить результат отказом.
+         */
+        REJECT,
+        /**
+         * Вытеснить самую старую задачу, завершив ее результат отказом.
+         */
+        DROP_OLDEST,
+        /**
+         * Ожидать места в течение {@link Options#getSubmitTimeout()}, затем завершить результат отказом.
+         */
+        TIMEOUT
+    }
+
+    /**
+     * Адрес API с собственным ограничителем, очередью и рабочим потоком.
+     * Адреса не ждут друг друга, поэтому каждый расходует свою квоту полностью.
+     * Разобранные URI и шаблон запроса с общими заголовками кэшируются.
+     */
+    private class Endpoint {
+        private final String pattern;
+        private final Pattern regex;
+        private final RateLimiter rateLimiter;
+        private final LaneQueue taskQueue;
+        private final ExecutorService worker = Executors.newSingleThreadExecutor();
+        private final ConcurrentMap<String, URI> uris = new ConcurrentHashMap<>();
+        private final HttpRequest.Builder template = HttpRequest.newBuilder()
+                .header("Content-Type", "application/json");
+
+        private Endpoint(String pattern, RateLimiter rateLimiter, Options options) {
+            this.pattern = pattern;
+            this.regex = compilePattern(pattern);
+            this.rateLimiter = rateLimiter;
+            this.taskQueue = new LaneQueue(options.getLaneWeights(), options.getQueueCapacity(), options.getMaxLaneWait());
+        }
+
+        private boolean matches(String path) {
+            return regex.matcher(path).matches();
+        }
+
+        private EndpointSnapshot snapshot() {
+            if (rateLimiter instanceof AdaptiveRateLimiter adaptive) {
+                return new EndpointSnapshot(pattern, taskQueue.size(), adaptive.getRatePerSecond(),
+                        adaptive.getDecreaseCount(), adaptive.getIncreaseCount());
+            }
+            return new EndpointSnapshot(pattern, taskQueue.size(), rateLimiter.getRatePerSecond(), 0, 0);
+        }
+
+        /**
+         * Метод для запуска рабочего потока, отправляющего задачи из очереди адреса
+         */
+        private void start() {
+            worker.submit(() -> {
+                try {
+                    while (true) {
+                        Task task = taskQueue.take();
+                        try {
+                            if (sendExecutor != null) {
+                                sendExecutor.execute(task);
+                            } else {
+                                task.run();
+                            }
+                        } catch (RuntimeException ex) {
+                            logger.error("Failed to dispatch task {}", task.name, ex);
+                            task.onFailure.accept(ex);
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    if (!closed) {
+                        logger.error("Task execution interrupted", ex);
+                    }
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        /**
+         * Метод для создания HTTP запроса
+         *
+         * @param url         Путь к ресурсу
+         * @param signature   Подпись
+         * @param requestBody Сериализованный в формат Json документ
+         * @return HTTP запрос
+         */
+        private HttpRequest createHttpRequest(String url, String signature, EncodedBody requestBody) {
+            URI uri = uris.get(url);
+            if (uri == null) {
+                uri = URI.create(url);
+                if (uris.size() < MAX_CACHED_URLS) {
+                    uris.put(url, uri);
+                }
+            }
+            HttpRequest.Builder builder = template.copy()
+                    .uri(uri)
+                    .header("Signature", signature)
+                    .POST(requestBody.publisher());
+            if (requestBody.contentEncoding() != null) {
+                builder.header("Content-Encoding", requestBody.contentEncoding());
+            }
+            return builder.build();
+        }
+
+        /**
+         * Метод для преобразования шаблона адреса в регулярное выражение
+         *
+         * @param pattern Шаблон, где {@code *} - любые символы, кроме {@code /}, а {@code **} - любые символы
+         * @return Регулярное выражение
+         */
+        private static Pattern compilePattern(String pattern) {
+            StringBuilder regex = new StringBuilder();
+            int literalStart = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                if (pattern.charAt(i) != '*') {
+                    continue;
+                }
+                regex.append(Pattern.quote(pattern.substring(literalStart, i)));
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append("[^/]*");
+                }
+                literalStart = i + 1;
+            }
+            regex.append(Pattern.quote(pattern.substring(literalStart)));
+            return Pattern.compile(regex.toString());
+        }
+    }
+
+    /**
+     * Очередь задач с несколькими полосами, разделяющими общий лимит запросов.
+     * Следующая задача выбирается по алгоритму взвешенной справедливой очереди (start-time fair queuing):
+     * при постановке задаче назначается виртуальное время начала, которое растет в полосе на стоимость задачи,
+     * деленную на вес полосы. Первой извлекается задача с наименьшим временем, поэтому при постоянной нагрузке
+     * полосы получают долю отправок, пропорциональную весу, а простаивавшая полоса не копит преимущество.
+     * Задача, ожидающая дольше допустимого, извлекается вне очереди. Емкость очереди общая для всех полос.
+     */
+    private static class LaneQueue {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private final Map<String, Lane> lanes = new LinkedHashMap<>();
+        private final int capacity;
+        private final long maxWaitNanos;
+        private int count;
+        private double virtualTime;
+
+        private LaneQueue(Map<String, Integer> weights, int capacity, Duration maxWait) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Queue capacity must be positive: " + capacity);
+            }
+            weights.forEach((name, weight) -> {
+                if (weight <= 0) {
+                    throw new IllegalArgumentException("Lane weight must be positive: " + name);
+                }
+                lanes.put(name, new Lane(name, weight));
+            });
+            lanes.putIfAbsent(DEFAULT_LANE, new Lane(DEFAULT_LANE, 1));
+            this.capacity = capacity;
+            this.maxWaitNanos = maxWait.toNanos();
+        }
+
+        /**
+         * Метод для получения полосы по имени
+         *
+         * @param name Имя полосы
+         * @return Полоса
+         * @throws IllegalArgumentException если полоса не настроена
+         */
+        private Lane lane(String name) {
+            Lane lane = lanes.get(name);
+            if (lane == null) {
+                throw new IllegalArgumentException("Unknown lane: " + name);
+            }
+            return lane;
+        }
+
+        private void put(Task task) throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (count == capacity) {
+                    notFull.await();
+                }
+                enqueue(task);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean offer(Task task) {
+            lock.lock();
+            try {
+                if (count == capacity) {
+                    return false;
+                }
+                enqueue(task);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean offer(Task task, long timeoutNanos) throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (count == capacity) {
+                    if (timeoutNanos <= 0) {
+                        return false;
+                    }
+                    timeoutNanos = notFull.awaitNanos(timeoutNanos);
+                }
+                enqueue(task);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Метод для извлечения следующей задачи с учетом весов полос
+         *
+         * @return Задача
+         */
+        private Task take() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (count == 0) {
+                    notEmpty.await();
+                }
+                long now = System.nanoTime();
+                Lane lane = nextLane(now);
+                Task task = lane.tasks.pollFirst();
+                virtualTime = Math.max(virtualTime, task.startTag);
+                lane.dispatched++;
+                lane.waitLatency.record(now - task.enqueuedAt);
+                count--;
+                notFull.signal();
+                return task;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Метод для добавления задачи с вытеснением самой давней задачи среди всех полос, если очередь заполнена.
+         * Проверка и вытеснение выполняются под одной блокировкой, поэтому место не может занять другой поток.
+         *
+         * @param task Задача
+         * @return Вытесненная задача, null, если место было, или сама задача, если вытеснить нечего
+         */
+        private Task offerDroppingOldest(Task task) {
+            lock.lock();
+            try {
+                if (count < capacity) {
+                    enqueue(task);
+                    return null;
+                }
+                Lane oldest = null;
+                for (Lane lane : lanes.values()) {
+                    Task head = lane.tasks.peekFirst();
+                    if (head != null && (oldest == null || head.enqueuedAt - oldest.tasks.peekFirst().enqueuedAt < 0)) {
+                        oldest = lane;
+                    }
+                }
+                if (oldest == null) {
+                    return task;
+                }
+                Task dropped = oldest.tasks.pollFirst();
+                count--;
+                enqueue(task);
+                return dropped;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int size(Lane lane) {
+            lock.lock();
+            try {
+                return lane.tasks.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int remainingCapacity() {
+            lock.lock();
+            try {
+                return capacity - count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private List<LaneSnapshot> snapshot(String endpoint) {
+            lock.lock();
+            try {
+                return lanes.values().stream()
+                        .map(lane -> new LaneSnapshot(endpoint, lane.name, lane.weight, lane.tasks.size(), lane.dispatched,
+                                lane.waitLatency.snapshot()))
+                        .toList();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void enqueue(Task task) {
+            Lane lane = task.lane;
+            task.enqueuedAt = System.nanoTime();
+            task.startTag = Math.max(virtualTime, lane.finishTag);
+            lane.finishTag = task.startTag + (double) task.cost / lane.weight;
+            lane.tasks.addLast(task);
+            count++;
+            notEmpty.signal();
+        }
+
+        /**
+         * Метод для выбора полосы, из которой будет извлечена следующая задача.
+         * Вне очереди выбирается полоса, задача в которой ожидает дольше всех сверх допустимого времени.
+         *
+         * @param now Текущее время по {@link System#nanoTime()}
+         * @return Непустая полоса
+         */
+        private Lane nextLane(long now) {
+            Lane next = null;
+            Lane starving = null;
+            for (Lane lane : lanes.values()) {
+                Task head = lane.tasks.peekFirst();
+                if (head == null) {
+                    continue;
+                }
+                if (now - head.enqueuedAt > maxWaitNanos
+                        && (starving == null || head.enqueuedAt - starving.tasks.peekFirst().enqueuedAt < 0)) {
+                    starving = lane;
+                }
+                if (next == null || head.startTag < next.tasks.peekFirst().startTag) {
+                    next = lane;
+                }
+            }
+            return starving != null ? starving : next;
+        }
+    }
+
+    /**
+     * Полоса очереди задач.
+     */
+    private static class Lane {
+        private final String name;
+        private final int weight;
+        private final Deque<Task> tasks = new ArrayDeque<>();
+        private final LatencyHistogram waitLatency = new LatencyHistogram();
+        private double finishTag;
+        private long dispatched;
+
+        private Lane(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Задача сериализации части документа с продуктами из диапазона [from, to).
+     * Диапазон больше {@link Options#getMaxProductsPerDocument()} делится пополам по границе лимита,
+     * а часть, сериализованный размер которой превышает {@link Options#getMaxDocumentBytes()}, делится пополам
+     * и сериализуется заново. Половины обрабатываются параллельно, порядок частей соответствует порядку продуктов.
+     */
+    private class ChunkTask extends RecursiveTask<List<Chunk>> {
+        private final Document document;
+        private final int from;
+        private final int to;
+
+        private ChunkTask(Document document, int from, int to) {
+            this.document = document;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Chunk> compute() {
+            int count = to - from;
+            if (maxProductsPerDocument > 0 && count > maxProductsPerDocument) {
+                int limits = (count + maxProductsPerDocument - 1) / maxProductsPerDocument;
+                return split(from + (limits / 2) * maxProductsPerDocument);
+            }
+            boolean whole = from == 0 && to == document.getProducts().size();
+            Document part = whole ? document : copyWithProducts(document, from, to);
+            EncodedBody body;
+            try {
+                body = encode(part);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            if (maxDocumentBytes > 0 && body.size() > maxDocumentBytes) {
+                if (count > 1) {
+                    body.release();
+                    return split(from + count / 2);
+                }
+                logger.warn("Document {} exceeds {} bytes with a single product", part.getDocId(), maxDocumentBytes);
+            }
+            return List.of(new Chunk(part.getDocId(), body));
+        }
+
+        private List<Chunk> split(int middle) {
+            ChunkTask left = new ChunkTask(document, from, middle);
+            ChunkTask right = new ChunkTask(document, middle, to);
+            right.fork();
+            List<Chunk> chunks = new ArrayList<>(left.compute());
+            chunks.addAll(right.join());
+            return chunks;
+        }
+
+        /**
+         * Метод для создания части документа с теми же реквизитами и копией продуктов из диапазона
+         */
+        private static Document copyWithProducts(Document document, int from, int to) {
+            Document part = new Document();
+            part.setDescription(document.getDescription());
+            part.setProducts(new ArrayList<>(document.getProducts().subList(from, to)));
+            part.setDocId(document.getDocId() != null ? document.getDocId() + "-" + from : null);
+            part.setDocStatus(document.getDocStatus());
+            part.setDocType(document.getDocType());
+            part.setImportRequest(document.isImportRequest());
+            part.setOwnerInn(document.getOwnerInn());
+            part.setParticipantInn(document.getParticipantInn());
+            part.setProducerInn(document.getProducerInn());
+            part.setProductionDate(document.getProductionDate());
+            part.setProductionType(document.getProductionType());
+            part.setRegDate(document.getRegDate());
+            part.setRegNumber(document.getRegNumber());
+            return part;
+        }
+    }
+
+    /**
+     * Сериализованная часть документа.
+     */
+    private static class Chunk {
+        private final String docId;
+        private final EncodedBody body;
+        private final CompletableFuture<CreateResult> result = new CompletableFuture<>();
+
+        private Chunk(String docId, EncodedBody body) {
+            this.docId = docId;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Документ, ожидающий отправки в режиме объединения по идентификатору.
+     */
+    private static class PendingDocument {
+        private final CompletableFuture<CreateResult> result = new CompletableFuture<>();
+        private final String url;
+        private Document document;
+        private String signature;
+        private String journaledBody;
+        private boolean dispatched;
+
+        private PendingDocument(String url, Document document, String signature, String journaledBody) {
+            this.url = url;
+            this.document = document;
+            this.signature = signature;
+            this.journaledBody = journaledBody;
+        }
+
+        /**
+         * Метод для замены содержимого более новой версией того же документа по тому же адресу
+         *
+         * @param newer Новая версия документа
+         * @return false, если документ уже передан на отправку
+         */
+        private synchronized boolean replaceWith(PendingDocument newer) {
+            if (dispatched || !url.equals(newer.url)) {
+                return false;
+            }
+            document = newer.document;
+            signature = newer.signature;
+            journaledBody = newer.journaledBody;
+            return true;
+        }
+
+        /**
+         * Метод для передачи документа на отправку, после которого содержимое больше не заменяется
+         *
+         * @return Последняя версия документа
+         */
+        private synchronized PendingDocument dispatch() {
+            dispatched = true;
+            return new PendingDocument(url, document, signature, journaledBody);
+        }
+    }
+
+    /**
+     * Задача на отправку документа в очереди.
+     */
+    private static class Task implements Runnable {
+        private final String name;
+        private final Lane lane;
+        private final int cost;
+        private final Runnable action;
+        private final Consumer<Throwable> onFailure;
+        private long enqueuedAt;
+        private double startTag;
+
+        private Task(String name, Lane lane, int cost, Runnable action, Consumer<Throwable> onFailure) {
+            this.name = name;
+            this.lane = lane;
+            this.cost = cost;
+            this.action = action;
+            this.onFailure = onFailure;
+        }
+
+        /**
+         * Метод для выполнения задачи. Исключение завершает результат задачи ошибкой и не останавливает рабочий поток.
+         */
+        @Override
+        public void run() {
+            try {
+                action.run();
+            } catch (RuntimeException ex) {
+                logger.error("Task {} failed", name, ex);
+                onFailure.accept(ex);
+            }
+        }
+
+        /**
+         * Метод для завершения результата задачи отказом
+         *
+         * @param reason Причина отказа
+         */
+        private void reject(String reason) {
+            onFailure.accept(new RejectedExecutionException(reason));
+        }
+    }
+
+    /**
+     * Класс с результатами пакетного создания документов.
+     */
+    @Getter
+    public static class BatchResult {
+        private final List<CreateResult> results;
+
+        public BatchResult(List<CreateResult> results) {
+            this.results = results;
+        }
+
+        public long getSuccessCount() {
+            return results.stream().filter(CreateResult::isSuccess).count();
+        }
+
+        public List<CreateResult> getFailures() {
+            return results.stream().filter(result -> !result.isSuccess()).toList();
+        }
+    }
+
+    /**
+     * Класс с результатом создания документа.
+     */
+    @Getter
+    public static class CreateResult {
+        private final String docId;
+        private final int statusCode;
+        /**
+         * Разобранный ответ API, null если запрос не был выполнен
+         */
+        private final ApiResponse response;
+        /**
+         * Тело ответа в исходном виде. Сохраняется только для ответов с ошибкой
+         * и для выборки успешных ответов, заданной {@link Options#getResponseLogSampleRate()}
+         */
+        private final String body;
+        private final Throwable error;
+        /**
+         * Результаты частей документа, разбитого по {@link Options#getMaxProductsPerDocument()}
+         * или {@link Options#getMaxDocumentBytes()} при включенном {@link Options#isSplitOversizedDocuments()},
+         * пустой список если документ отправлен целиком
+         */
+        private final List<CreateResult> chunks;
+
+        private CreateResult(String docId, int statusCode, ApiResponse response, String body, Throwable error,
+                             List<CreateResult> chunks) {
+            this.docId = docId;
+            this.statusCode = statusCode;
+            this.response = response;
+            this.body = body;
+            this.error = error;
+            this.chunks = chunks;
+        }
+
+        public static CreateResult response(String docId, int statusCode, String body) {
+            return new CreateResult(docId, statusCode, null, body, null, List.of());
+        }
+
+        public static CreateResult response(String docId, int statusCode, ApiResponse response, String body) {
+            return new CreateResult(docId, statusCode, response, body, null, List.of());
+        }
+
+        public static CreateResult failure(String docId, Throwable error) {
+            return new CreateResult(docId, 0, null, null, error, List.of());
+        }
+
+        /**
+         * Метод для объединения результатов частей документа.
+         * Документ создан, если созданы все части. Иначе код, ответ и ошибка берутся из первой неудачной части,
+         * а ответы всех частей доступны в {@link #getChunks()}.
+         *
+         * @param docId Идентификатор исходного документа
+         * @param chunks Результаты частей в порядке продуктов
+         * @return Объединенный результат
+         */
+        public static CreateResult combine(String docId, List<CreateResult> chunks) {
+            CreateResult failed = chunks.stream().filter(chunk -> !chunk.isSuccess()).findFirst().orElse(null);
+            if (failed == null) {
+                return new CreateResult(docId, chunks.get(chunks.size() - 1).statusCode, null, null, null, List.copyOf(chunks));
+            }
+            return new CreateResult(docId, failed.statusCode, failed.response, failed.body, failed.error, List.copyOf(chunks));
+        }
+
+        public boolean isSuccess() {
+            return error == null && isSuccessStatus(statusCode);
+        }
+
+        public boolean isRejected() {
+            return error instanceof RejectedExecutionException;
+        }
+
+        private static boolean isSuccessStatus(int statusCode) {
+            return statusCode >= 200 && statusCode < 300;
+        }
+    }
+
+    /**
+     * Класс с ответом API на создание документа.
+     * При успехе заполнен идентификатор документа в {@link #getValue()}, при ошибке - код и описание ошибки.
+     */
+    @Getter
+    public static class ApiResponse {
+        private String value;
+        private String code;
+        private String errorMessage;
+        private String description;
+
+        /**
+         * Метод для заполнения поля верхнего уровня из текущего значения парсера
+         *
+         * @param field Имя поля
+         * @param parser Парсер, стоящий на значении поля
+         */
+        private void set(String field, JsonParser parser) throws IOException {
+            if (field == null) {
+                return;
+            }
+            switch (field) {
+                case "value" -> value = parser.getValueAsString();
+                case "code" -> code = parser.getValueAsString();
+                case "error_message" -> errorMessage = parser.getValueAsString();
+                case "description" -> description = parser.getValueAsString();
+                default -> {
+                }
+            }
+        }
+    }
+
+    /**
+     * Разобранный ответ вместе с исходным телом, если оно сохранялось.
+     */
+    private static class DecodedResponse {
+        private final ApiResponse value;
+        private final String body;
+        private final IOException error;
+
+        private DecodedResponse(ApiResponse value, String body, IOException error) {
+            this.value = value;
+            this.body = body;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Потоковый разбор тела ответа неблокирующим парсером Jackson.
+     * Каждый полученный буфер сразу передается парсеру, поэтому тело не собирается в строку
+     * и поток HTTP клиента не блокируется в ожидании данных. Читаются только скалярные поля верхнего уровня,
+     * вложенные структуры пропускаются. Исходное тело копируется, только если его нужно сохранить.
+     * Ошибка разбора не прерывает чтение ответа: результат определяется кодом статуса.
+     */
+    private static class ResponseDecoder implements HttpResponse.BodySubscriber<DecodedResponse> {
+        private final CompletableFuture<DecodedResponse> decoded = new CompletableFuture<>();
+        private final ApiResponse value = new ApiResponse();
+        private final JsonParser parser;
+        private final ByteArrayOutputStream body;
+        private Flow.Subscription subscription;
+        private IOException error;
+        private String field;
+        private int depth;
+
+        private ResponseDecoder(JsonFactory jsonFactory, boolean keepBody) {
+            JsonParser nonBlockingParser;
+            try {
+                nonBlockingParser = jsonFactory.createNonBlockingByteBufferParser();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            this.parser = nonBlockingParser;
+            this.body = keepBody ? new ByteArrayOutputStream() : null;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            for (ByteBuffer buffer : buffers) {
+                if (body != null) {
+                    copy(buffer);
+                }
+                if (error == null) {
+                    try {
+                        ((ByteBufferFeeder) parser.getNonBlockingInputFeeder()).feedInput(buffer);
+                        parse();
+                    } catch (IOException ex) {
+                        error = ex;
+                    }
+                }
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            closeParser();
+            decoded.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (error == null) {
+                try {
+                    parser.getNonBlockingInputFeeder().endOfInput();
+                    parse();
+                } catch (IOException ex) {
+                    error = ex;
+                }
+            }
+            closeParser();
+            decoded.complete(new DecodedResponse(value, body == null ? null : body.toString(StandardCharsets.UTF_8), error));
+        }
+
+        @Override
+        public CompletionStage<DecodedResponse> getBody() {
+            return decoded;
+        }
+
+        /**
+         * Метод для разбора всех лексем, доступных в переданных парсеру данных
+         */
+        private void parse() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                } else if (depth == 1 && token == JsonToken.FIELD_NAME) {
+                    field = parser.currentName();
+                } else if (depth == 1 && token.isScalarValue()) {
+                    value.set(field, parser);
+                }
+            }
+        }
+
+        private void closeParser() {
+            try {
+                parser.close();
+            } catch (IOException ex) {
+                logger.warn("Failed to close response parser", ex);
+            }
+        }
+
+        private void copy(ByteBuffer buffer) {
+            ByteBuffer source = buffer.duplicate();
+            if (source.hasArray()) {
+                body.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+            } else {
+                byte[] bytes = new byte[source.remaining()];
+                source.get(bytes);
+                body.write(bytes, 0, bytes.length);
+            }
+        }
+    }
+
+    /**
+     * Журнал принятых документов на основе отображаемых в память файлов-сегментов.
+     * Каждый принятый документ записывается в конец активного сегмента до постановки в очередь,
+     * после успешной отправки в журнал добавляется запись о подтверждении.
+     * При открытии журнала неподтвержденные документы восстанавливаются для повторной отправки,
+     * перед каждой повторной отправкой запись о принятии дописывается заново с увеличенным счетчиком повторов.
+     * Заполненный сегмент закрывается и создается следующий. Самые старые сегменты удаляются,
+     * когда в них не остается неподтвержденных документов. При каждом переходе на новый сегмент
+     * неподтвержденные записи самого старого сегмента переносятся в активный, поэтому долго
+     * не подтверждаемый документ не удерживает старые сегменты.
+     * После закрытия отображения сегментов освобождаются, и журнал отклоняет операции с записями.
+     * <p>
+     * Формат записи: длина, тип, идентификатор, поля с префиксом длины, контрольная сумма CRC32.
+     * Запись о принятии содержит адрес, подпись, идентификатор документа, тело и, начиная с первого повтора,
+     * количество повторов.
+     */
+    public static class DocumentJournal implements Closeable {
+
+        private static final String SEGMENT_PREFIX = "journal-";
+        private static final String SEGMENT_SUFFIX = ".seg";
+        private static final byte ACCEPTED = 1;
+        private static final byte ACKNOWLEDGED = 2;
+        private static final int TYPE_AND_ID_SIZE = Byte.BYTES + Long.BYTES;
+        private static final int FRAME_SIZE = Integer.BYTES + Integer.BYTES;
+        private static final Consumer<MappedByteBuffer> UNMAPPER = unmapper();
+
+        private final Path directory;
+        private final int segmentSize;
+        private final TreeMap<Long, Segment> segments = new TreeMap<>();
+        private final Map<Long, Location> pending = new HashMap<>();
+        private Segment active;
+        private long nextId = 1;
+        private boolean compacting;
+        private boolean closed;
+
+        private DocumentJournal(Path directory, int segmentSize) {
+            this.directory = directory;
+            this.segmentSize = segmentSize;
+        }
+
+        /**
+         * Метод для открытия журнала с восстановлением состояния из существующих сегментов
+         *
+         * @param directory   Каталог журнала
+         * @param segmentSize Размер сегмента в байтах
+         * @return Журнал
+         * @throws IOException если сегменты не удалось прочитать или создать
+         */
+        public static DocumentJournal open(Path directory, int segmentSize) throws IOException {
+            Files.createDirectories(directory);
+            DocumentJournal journal = new DocumentJournal(directory, segmentSize);
+            try {
+                journal.recover();
+            } catch (IOException | RuntimeException ex) {
+                journal.close();
+                throw ex;
+            }
+            return journal;
+        }
+
+        /**
+         * Метод для добавления принятого документа в журнал
+         *
+         * @param url Путь к ресурсу
+         * @param signature Подпись
+         * @param docId Идентификатор документа
+         * @param body Сериализованный в формат Json документ
+         * @return Идентификатор записи в журнале
+         * @throws IllegalStateException если журнал закрыт
+         */
+        public synchronized long append(String url, String signature, String docId, String body) {
+            ensureOpen();
+            long id = nextId++;
+            Location location = writeRecord(ACCEPTED, id, bytes(url), bytes(signature), bytes(docId), bytes(body));
+            pending.put(id, location);
+            location.segment.retain();
+            return id;
+        }
+
+        /**
+         * Метод для учета повторной отправки документа.
+         * Запись о принятии дописывается в активный сегмент с увеличенным счетчиком и заменяет прежнюю.
+         *
+         * @param id Идентификатор записи в журнале
+         * @return Количество повторов с учетом текущего или 0, если запись уже подтверждена
+         * @throws IllegalStateException если журнал закрыт
+         */
+        public synchronized int markReplayed(long id) {
+            ensureOpen();
+            Location location = pending.get(id);
+            if (location == null) {
+                return 0;
+            }
+            JournalEntry entry = readEntry(id, location);
+            int replayCount = entry.getReplayCount() + 1;
+            Location replayed = writeRecord(ACCEPTED, id, bytes(entry.getUrl()), bytes(entry.getSignature()),
+                    bytes(entry.getDocId()), bytes(entry.getBody()), bytes(Integer.toString(replayCount)));
+            pending.put(id, replayed);
+            replayed.segment.retain();
+            location.segment.release();
+            if (location.segment != active && location.segment.live == 0) {
+                compact(false);
+            }
+            return replayCount;
+        }
+
+        /**
+         * Метод для подтверждения успешной отправки документа
+         *
+         * @param id Идентификатор записи в журнале
+         * @throws IllegalStateException если журнал закрыт
+         */
+        public synchronized void acknowledge(long id) {
+            ensureOpen();
+            Location location = pending.remove(id);
+            if (location == null) {
+                return;
+            }
+            writeRecord(ACKNOWLEDGED, id);
+            location.segment.release();
+            if (location.segment != active && location.segment.live == 0) {
+                compact(false);
+            }
+        }
+
+        /**
+         * Метод для получения неподтвержденных документов в порядке их принятия
+         *
+         * @return Неподтвержденные документы
+         * @throws IllegalStateException если журнал закрыт
+         */
+        public synchronized List<JournalEntry> pendingEntries() {
+            ensureOpen();
+            return pending.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .map(entry -> readEntry(entry.getKey(), entry.getValue()))
+                    .toList();
+        }
+
+        public synchronized int getPendingCount() {
+            return pending.size();
+        }
+
+        /**
+         * Метод для закрытия журнала.
+         * Активный сегмент сбрасывается на диск, каналы сегментов закрываются, а их отображения освобождаются.
+         * Повторный вызов ничего не делает.
+         */
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (active != null) {
+                active.buffer.force();
+            }
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            pending.clear();
+        }
+
+        private void ensureOpen() {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+        }
+
+        /**
+         * Метод для восстановления состояния журнала из файлов сегментов
+         */
+        private void recover() throws IOException {
+            List<Path> files;
+            try (Stream<Path> list = Files.list(directory)) {
+                files = list.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                                && file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .toList();
+            }
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long index = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                Segment segment = mapSegment(index, (int) Files.size(file));
+                segments.put(index, segment);
+                scan(segment);
+            }
+            active = segments.isEmpty() ? mapSegment(0, segmentSize) : segments.lastEntry().getValue();
+            segments.put(active.index, active);
+            compact(true);
+        }
+
+        /**
+         * Метод для чтения записей сегмента.
+         * Чтение останавливается на первой пустой или поврежденной записи, поврежденный хвост обнуляется.
+         *
+         * @param segment Сегмент
+         */
+        private void scan(Segment segment) {
+            MappedByteBuffer buffer = segment.buffer;
+            int position = 0;
+            while (position + FRAME_SIZE + TYPE_AND_ID_SIZE <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length == 0) {
+                    break;
+                }
+                if (length < TYPE_AND_ID_SIZE || position + FRAME_SIZE + length > buffer.capacity()
+                        || checksum(buffer, position + Integer.BYTES, length) != buffer.getInt(position + Integer.BYTES + length)) {
+                    logger.warn("Truncating damaged journal record in {} at {}", segment.path, position);
+                    for (int i = position; i < buffer.capacity(); i++) {
+                        buffer.put(i, (byte) 0);
+                    }
+                    break;
+                }
+                byte type = buffer.get(position + Integer.BYTES);
+                long id = buffer.getLong(position + Integer.BYTES + Byte.BYTES);
+                int size = FRAME_SIZE + length;
+                if (type == ACCEPTED) {
+                    Location previous = pending.put(id, new Location(segment, position, size));
+                    if (previous != null) {
+                        previous.segment.release();
+                    }
+                    segment.retain();
+                } else if (type == ACKNOWLEDGED) {
+                    Location location = pending.remove(id);
+                    if (location != null) {
+                        location.segment.release();
+                    }
+                }
+                nextId = Math.max(nextId, id + 1);
+                position += size;
+            }
+            segment.writePosition = position;
+        }
+
+        /**
+         * Метод для записи в активный сегмент
+         *
+         * @param type Тип записи
+         * @param id Идентификатор записи
+         * @param fields Поля записи
+         * @return Расположение записи
+         */
+        private Location writeRecord(byte type, long id, byte[]... fields) {
+            int length = TYPE_AND_ID_SIZE;
+            for (byte[] field : fields) {
+                length += Integer.BYTES + (field == null ? 0 : field.length);
+            }
+            Segment segment = reserve(FRAME_SIZE + length);
+            MappedByteBuffer buffer = segment.buffer;
+            int position = segment.writePosition;
+            int offset = position + Integer.BYTES;
+            buffer.put(offset, type);
+            buffer.putLong(offset + Byte.BYTES, id);
+            offset += TYPE_AND_ID_SIZE;
+            for (byte[] field : fields) {
+                buffer.putInt(offset, field == null ? -1 : field.length);
+                offset += Integer.BYTES;
+                if (field != null) {
+                    buffer.put(offset, field);
+                    offset += field.length;
+                }
+            }
+            buffer.putInt(offset, checksum(buffer, position + Integer.BYTES, length));
+            buffer.putInt(position, length);
+            segment.writePosition = offset + Integer.BYTES;
+            return new Location(segment, position, FRAME_SIZE + length);
+        }
+
+        /**
+         * Метод для получения сегмента, в котором достаточно места для записи, с переходом на новый сегмент при необходимости
+         *
+         * @param size Размер записи
+         * @return Активный сегмент
+         */
+        private Segment reserve(int size) {
+            if (active.writePosition + size <= active.buffer.capacity()) {
+                return active;
+            }
+            active.buffer.force();
+            try {
+                active = mapSegment(active.index + 1, Math.max(segmentSize, size));
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to create journal segment", ex);
+            }
+            segments.put(active.index, active);
+            compact(true);
+            return active;
+        }
+
+        /**
+         * Метод для удаления самых старых сегментов без неподтвержденных записей.
+         * Удаляются только сегменты с начала журнала, чтобы записи о подтверждении
+         * не исчезали раньше записей о принятии, к которым они относятся.
+         * Неподтвержденные записи переносятся в активный сегмент не более чем из одного сегмента за вызов,
+         * так что при переходе на новый сегмент переписывается не больше одного сегмента данных.
+         *
+         * @param relocateOldest Перенести неподтвержденные записи самого старого сегмента, чтобы удалить его
+         */
+        private void compact(boolean relocateOldest) {
+            if (compacting) {
+                return;
+            }
+            compacting = true;
+            try {
+                while (segments.firstEntry().getValue() != active) {
+                    Segment oldest = segments.firstEntry().getValue();
+                    if (oldest.live > 0) {
+                        if (!relocateOldest) {
+                            break;
+                        }
+                        relocateOldest = false;
+                        relocate(oldest);
+                    }
+                    segments.remove(oldest.index);
+                    oldest.close();
+                    try {
+                        Files.deleteIfExists(oldest.path);
+                    } catch (IOException ex) {
+                        logger.warn("Failed to delete journal segment {}", oldest.path, ex);
+                    }
+                }
+            } finally {
+                compacting = false;
+            }
+        }
+
+        /**
+         * Метод для переноса неподтвержденных записей сегмента в активный сегмент
+         *
+         * @param segment Сегмент
+         */
+        private void relocate(Segment segment) {
+            for (Location location : pending.values()) {
+                if (location.segment != segment) {
+                    continue;
+                }
+                Segment target = reserve(location.size);
+                target.buffer.put(target.writePosition, segment.buffer, location.position, location.size);
+                segment.release();
+                target.retain();
+                location.segment = target;
+                location.position = target.writePosition;
+                target.writePosition += location.size;
+            }
+        }
+
+        /**
+         * Метод для чтения принятого документа из сегмента
+         */
+        private JournalEntry readEntry(long id, Location location) {
+            ByteBuffer buffer = location.segment.buffer.duplicate();
+            buffer.position(location.position + Integer.BYTES + TYPE_AND_ID_SIZE);
+            String url = readString(buffer);
+            String signature = readString(buffer);
+            String docId = readString(buffer);
+            String body = readString(buffer);
+            boolean replayed = buffer.position() < location.position + location.size - Integer.BYTES;
+            int replayCount = replayed ? Integer.parseInt(readString(buffer)) : 0;
+            return new JournalEntry(id, url, signature, docId, body, replayCount);
+        }
+
+        private Segment mapSegment(long index, int size) throws IOException {
+            Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                return new Segment(index, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+
+        /**
+         * Метод для получения способа освободить отображение файла, не дожидаясь сборки мусора.
+         * Без явного освобождения удаленный сегмент занимает место на диске, пока жив его буфер,
+         * а в Windows файл с отображением нельзя удалить. Если среда выполнения не дает доступа
+         * к sun.misc.Unsafe, отображение освобождается сборщиком мусора.
+         *
+         * @return Способ освобождения отображения
+         */
+        private static Consumer<MappedByteBuffer> unmapper() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                Object unsafe = field.get(null);
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                return buffer -> {
+                    try {
+                        invokeCleaner.invoke(unsafe, buffer);
+                    } catch (ReflectiveOperationException ex) {
+                        logger.warn("Failed to unmap journal segment", ex);
+                    }
+                };
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                logger.debug("Journal segments will be unmapped by the garbage collector", ex);
+                return buffer -> {
+                };
+            }
+        }
+
+        private static int checksum(ByteBuffer buffer, int position, int length) {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(position, length));
+            return (int) crc.getValue();
+        }
+
+        private static byte[] bytes(String value) {
+            return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static String readString(ByteBuffer buffer) {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] value = new byte[length];
+            buffer.get(value);
+            return new String(value, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Неподтвержденный документ из журнала.
+         */
+        @Getter
+        public static class JournalEntry {
+            private final long id;
+            private final String url;
+            private final String signature;
+            private final String docId;
+            private final String body;
+            /**
+             * Сколько раз документ уже отправлялся повторно при открытии журнала
+             */
+            private final int replayCount;
+
+            private JournalEntry(long id, String url, String signature, String docId, String body, int replayCount) {
+                this.id = id;
+                this.url = url;
+                this.signature = signature;
+                this.docId = docId;
+                this.body = body;
+                this.replayCount = replayCount;
+            }
+        }
+
+        /**
+         * Файл сегмента журнала.
+         */
+        private static class Segment {
+            private final long index;
+            private final Path path;
+            private final FileChannel channel;
+            private final MappedByteBuffer buffer;
+            private int writePosition;
+            private int live;
+
+            private Segment(long index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+                this.index = index;
+                this.path = path;
+                this.channel = channel;
+                this.buffer = buffer;
+            }
+
+            private void retain() {
+                live++;
+            }
+
+            private void release() {
+                live--;
+            }
+
+            /**
+             * Метод для закрытия канала и освобождения отображения. После вызова буфер сегмента использовать нельзя.
+             */
+            private void close() {
+                UNMAPPER.accept(buffer);
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    logger.warn("Failed to close journal segment {}", path, ex);
+                }
+            }
+        }
+
+        /**
+         * Расположение записи о принятии документа.
+         */
+        private static class Location {
+            private Segment segment;
+            private int position;
+            private final int size;
+
+            private Location(Segment segment, int position, int size) {
+                this.segment = segment;
+                this.position = position;
+                this.size = size;
+            }
+        }
+    }
+
+    /**
+     * Метрики клиента, публикуемые через JMX.
+     * Задержки указаны в микросекундах.
+     */
+    public interface MetricsMXBean {
+
+        int getQueueDepth();
+
+        long getSubmittedCount();
+
+        long getSucceededCount();
+
+        long getFailedCount();
+
+        long getRejectedCount();
+
+        long getRetryCount();
+
+        /**
+         * @return Количество отправок, объединенных с уже ожидающим в очереди документом
+         */
+        long getCoalescedCount();
+
+        /**
+         * @return Глубина очереди, количество извлеченных задач и время ожидания по полосам
+         */
+        List<LaneSnapshot> getLanes();
+
+        /**
+         * @return Глубина очереди, текущая частота и изменения частоты по адресам
+         */
+        List<EndpointSnapshot> getEndpoints();
+
+        /**
+         * @return Время от постановки в очередь до отправки первой попытки
+         */
+        HistogramSnapshot getEnqueueToSendLatency();
+
+        /**
+         * @return Время ожидания разрешения ограничителя
+         */
+        HistogramSnapshot getLimiterWaitLatency();
+
+        /**
+         * @return Время от отправки запроса до получения ответа для каждой попытки
+         */
+        HistogramSnapshot getRoundTripLatency();
+    }
+
+    /**
+     * Срез метрик клиента на момент вызова {@link CrptApi#getMetrics()}.
+     */
+    @Getter
+    public static class MetricsSnapshot implements MetricsMXBean {
+        private final int queueDepth;
+        private final long submittedCount;
+        private final long succeededCount;
+        private final long failedCount;
+        private final long rejectedCount;
+        private final long retryCount;
+        private final long coalescedCount;
+        private final List<LaneSnapshot> lanes;
+        private final List<EndpointSnapshot> endpoints;
+        private final HistogramSnapshot enqueueToSendLatency;
+        private final HistogramSnapshot limiterWaitLatency;
+        private final HistogramSnapshot roundTripLatency;
+
+        private MetricsSnapshot(MetricsMXBean metrics) {
+            this.queueDepth = metrics.getQueueDepth();
+            this.submittedCount = metrics.getSubmittedCount();
+            this.succeededCount = metrics.getSucceededCount();
+            this.failedCount = metrics.getFailedCount();
+            this.rejectedCount = metrics.getRejectedCount();
+            this.retryCount = metrics.getRetryCount();
+            this.coalescedCount = metrics.getCoalescedCount();
+            this.lanes = metrics.getLanes();
+            this.endpoints = metrics.getEndpoints();
+            this.enqueueToSendLatency = metrics.getEnqueueToSendLatency();
+            this.limiterWaitLatency = metrics.getLimiterWaitLatency();
+            this.roundTripLatency = metrics.getRoundTripLatency();
+        }
+    }
+
+    /**
+     * Срез состояния адреса API.
+     */
+    @Getter
+    public static class EndpointSnapshot {
+        private final String pattern;
+        private final int queueDepth;
+        /**
+         * Текущая допустимая частота запросов в секунду
+         */
+        private final double ratePerSecond;
+        private final long rateDecreaseCount;
+        private final long rateIncreaseCount;
+
+        @ConstructorProperties({"pattern", "queueDepth", "ratePerSecond", "rateDecreaseCount", "rateIncreaseCount"})
+        public EndpointSnapshot(String pattern, int queueDepth, double ratePerSecond, long rateDecreaseCount, long rateIncreaseCount) {
+            this.pattern = pattern;
+            this.queueDepth = queueDepth;
+            this.ratePerSecond = ratePerSecond;
+            this.rateDecreaseCount = rateDecreaseCount;
+            this.rateIncreaseCount = rateIncreaseCount;
+        }
+    }
+
+    /**
+     * Срез состояния полосы очереди.
+     */
+    @Getter
+    public static class LaneSnapshot {
+        /**
+         * Шаблон адреса, которому принадлежит полоса
+         */
+        private final String endpoint;
+        private final String name;
+        private final int weight;
+        private final int queueDepth;
+        private final long dispatchedCount;
+        /**
+         * Время от постановки задачи в полосу до ее извлечения рабочим потоком
+         */
+        private final HistogramSnapshot waitLatency;
+
+        @ConstructorProperties({"endpoint", "name", "weight", "queueDepth", "dispatchedCount", "waitLatency"})
+        public LaneSnapshot(String endpoint, String name, int weight, int queueDepth, long dispatchedCount,
+                            HistogramSnapshot waitLatency) {
+            this.endpoint = endpoint;
+            this.name = name;
+            this.weight = weight;
+            this.queueDepth = queueDepth;
+            this.dispatchedCount = dispatchedCount;
+            this.waitLatency = waitLatency;
+        }
+    }
+
+    /**
+     * Срез гистограммы задержек, значения в микросекундах.
+     */
+    @Getter
+    public static class HistogramSnapshot {
+        private final long count;
+        private final long meanMicros;
+        private final long p50Micros;
+        private final long p90Micros;
+        private final long p99Micros;
+        private final long p999Micros;
+        private final long maxMicros;
+
+        @ConstructorProperties({"count", "meanMicros", "p50Micros", "p90Micros", "p99Micros", "p999Micros", "maxMicros"})
+        public HistogramSnapshot(long count, long meanMicros, long p50Micros, long p90Micros, long p99Micros,
+                                 long p999Micros, long maxMicros) {
+            this.count = count;
+            this.meanMicros = meanMicros;
+            this.p50Micros = p50Micros;
+            this.p90Micros = p90Micros;
+            this.p99Micros = p99Micros;
+            this.p999Micros = p999Micros;
+            this.maxMicros = maxMicros;
+        }
+    }
+
+    /**
+     * Счетчики и гистограммы клиента.
+     * На пути отправки выполняются только неблокирующие инкременты, срезы собираются при чтении.
+     */
+    private static class Metrics implements MetricsMXBean {
+        private final IntSupplier queueDepth;
+        private final Supplier<List<LaneSnapshot>> lanes;
+        private final Supplier<List<EndpointSnapshot>> endpoints;
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LatencyHistogram enqueueToSend = new LatencyHistogram();
+        private final LatencyHistogram limiterWait = new LatencyHistogram();
+        private final LatencyHistogram roundTrip = new LatencyHistogram();
+
+        private Metrics(IntSupplier queueDepth, Supplier<List<LaneSnapshot>> lanes, Supplier<List<EndpointSnapshot>> endpoints) {
+            this.queueDepth = queueDepth;
+            this.lanes = lanes;
+            this.endpoints = endpoints;
+        }
+
+        /**
+         * Метод для учета результата создания документа
+         *
+         * @param result Результат
+         * @return Тот же результат
+         */
+        private CompletableFuture<CreateResult> track(CompletableFuture<CreateResult> result) {
+            submitted.increment();
+            result.thenAccept(createResult -> {
+                if (createResult.isSuccess()) {
+                    succeeded.increment();
+                } else if (createResult.isRejected()) {
+                    rejected.increment();
+                } else {
+                    failed.increment();
+                }
+            });
+            return result;
+        }
+
+        private MetricsSnapshot snapshot() {
+            return new MetricsSnapshot(this);
+        }
+
+        @Override
+        public int getQueueDepth() {
+            return queueDepth.getAsInt();
+        }
+
+        @Override
+        public long getSubmittedCount() {
+            return submitted.sum();
+        }
+
+        @Override
+        public long getSucceededCount() {
+            return succeeded.sum();
+        }
+
+        @Override
+        public long getFailedCount() {
+            return failed.sum();
+        }
+
+        @Override
+        public long getRejectedCount() {
+            return rejected.sum();
+        }
+
+        @Override
+        public long getRetryCount() {
+            return retries.sum();
+        }
+
+        @Override
+        public long getCoalescedCount() {
+            return coalesced.sum();
+        }
+
+        @Override
+        public List<LaneSnapshot> getLanes() {
+            return lanes.get();
+        }
+
+        @Override
+        public List<EndpointSnapshot> getEndpoints() {
+            return endpoints.get();
+        }
+
+        @Override
+        public HistogramSnapshot getEnqueueToSendLatency() {
+            return enqueueToSend.snapshot();
+        }
+
+        @Override
+        public HistogramSnapshot getLimiterWaitLatency() {
+            return limiterWait.snapshot();
+        }
+
+        @Override
+        public HistogramSnapshot getRoundTripLatency() {
+            return roundTrip.snapshot();
+        }
+    }
+
+    /**
+     * Гистограмма задержек с логарифмически-линейными корзинами, как в HdrHistogram.
+     * Каждая степень двойки делится на 32 равные корзины, что дает относительную погрешность около 3%
+     * на всем диапазоне значений при фиксированном объеме памяти. Запись значения - один атомарный инкремент.
+     */
+    private static class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray((Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT);
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        /**
+         * Метод для записи значения
+         *
+         * @param nanos Задержка в наносекундах
+         */
+        private void record(long nanos) {
+            long value = Math.max(0, nanos);
+            counts.incrementAndGet(index(value));
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        private HistogramSnapshot snapshot() {
+            long[] snapshot = new long[counts.length()];
+            long total = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+            long maxNanos = max.get();
+            return new HistogramSnapshot(total,
+                    total == 0 ? 0 : toMicros(sum.sum() / total),
+                    toMicros(percentile(snapshot, total, 0.5, maxNanos)),
+                    toMicros(percentile(snapshot, total, 0.9, maxNanos)),
+                    toMicros(percentile(snapshot, total, 0.99, maxNanos)),
+                    toMicros(percentile(snapshot, total, 0.999, maxNanos)),
+                    toMicros(maxNanos));
+        }
+
+        private static long percentile(long[] snapshot, long total, double quantile, long maxNanos) {
+            long rank = (long) Math.ceil(quantile * total);
+            long cumulative = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                cumulative += snapshot[i];
+                if (cumulative >= rank && cumulative > 0) {
+                    return Math.min(upperBound(i), maxNanos);
+                }
+            }
+            return 0;
+        }
+
+        private static int index(long value) {
+            if (value < SUB_BUCKET_COUNT) {
+                return (int) value;
+            }
+            int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        }
+
+        private static long upperBound(int index) {
+            if (index < 2 * SUB_BUCKET_COUNT) {
+                return index;
+            }
+            int shift = index / SUB_BUCKET_COUNT - 1;
+            long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+            return ((subBucket + 1) << shift) - 1;
+        }
+
+        private static long toMicros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+    }
+
+    /**
+     * Ограничитель частоты запросов.
+     */
+    public interface RateLimiter {
+
+        /**
+         * Метод для получения разрешения на запрос, блокирует поток до момента, когда запрос можно отправить.
+         *
+         * @throws InterruptedException если ожидание было прервано
+         */
+        void acquire() throws InterruptedException;
+
+        /**
+         * Метод для получения разрешения на запрос с ограничением времени ожидания.
+         * Если разрешение не может быть получено за отведенное время, оно не резервируется.
+         *
+         * @param timeout Максимальное время ожидания
+         * @param unit    Единица измерения времени ожидания
+         * @return true, если разрешение получено
+         * @throws InterruptedException если ожидание было прервано
+         */
+        boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException;
+
+        /**
+         * Метод для резервирования разрешения без блокировки.
+         *
+         * @return Момент времени по {@link System#nanoTime()}, начиная с которого запрос можно отправить
+         */
+        long reserve();
+
+        /**
+         * Метод для учета ответа на запрос, отправленный по разрешению ограничителя.
+         * Адаптивные ограничители подстраивают частоту по ответам, остальные их игнорируют.
+         *
+         * @param statusCode     Код статуса ответа или 0, если ответ не получен
+         * @param sentAt         Момент отправки запроса по {@link System#nanoTime()}
+         * @param roundTripNanos Время от отправки запроса до получения ответа
+         */
+        default void onResponse(int statusCode, long sentAt, long roundTripNanos) {
+        }
+
+        /**
+         * @return Текущая допустимая частота запросов в секунду или {@link Double#NaN}, если она неизвестна
+         */
+        default double getRatePerSecond() {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Ограничитель на основе корзины маркеров (алгоритм GCRA).
+     * Все состояние - это одно число, теоретическое время прибытия следующего запроса,
+     * которое изменяется через CAS, поэтому потоки не блокируют друг друга при учете разрешений.
+     * По умолчанию емкость корзины равна 1: запросы равномерно распределяются по интервалу,
+     * и ни в одном окне длиной в интервал лимит не превышается.
+     * Наследники определяют, где хранится состояние и по каким часам оно отсчитывается.
+     */
+    public abstract static class AbstractTokenBucketRateLimiter implements RateLimiter {
+
+        protected final long nanosPerPermit;
+        protected final long burstTolerance;
+
+        /**
+         * @param timeUnit     Интервал, на который действует лимит
+         * @param requestLimit Максимальное количество запросов за интервал
+         * @param burst        Емкость корзины - сколько запросов можно отправить подряд без ожидания
+         */
+        protected AbstractTokenBucketRateLimiter(TimeUnit timeUnit, int requestLimit, int burst) {
+            if (requestLimit <= 0) {
+                throw new IllegalArgumentException("Request limit must be positive: " + requestLimit);
+            }
+            if (burst <= 0 || burst > requestLimit) {
+                throw new IllegalArgumentException("Burst must be in range [1, " + requestLimit + "]: " + burst);
+            }
+            this.nanosPerPermit = Math.max(1, timeUnit.toNanos(1) / requestLimit);
+            this.burstTolerance = (burst - 1) * nanosPerPermit;
+        }
+
+        /**
+         * @return Текущее время в наносекундах по часам, в которых хранится состояние
+         */
+        protected abstract long currentTime();
+
+        /**
+         * @return Теоретическое время прибытия следующего запроса
+         */
+        protected abstract long loadArrivalTime();
+
+        /**
+         * Метод для атомарной замены теоретического времени прибытия
+         *
+         * @return true, если значение не изменилось с момента чтения и было заменено
+         */
+        protected abstract boolean compareAndSetArrivalTime(long expected, long arrivalTime);
+
+        /**
+         * @return Интервал между разрешениями в наносекундах
+         */
+        protected long permitInterval() {
+            return nanosPerPermit;
+        }
+
+        @Override
+        public double getRatePerSecond() {
+            return (double) TimeUnit.SECONDS.toNanos(1) / permitInterval();
+        }
+
+        /**
+         * Метод для перевода момента времени из часов состояния в {@link System#nanoTime()}
+         *
+         * @param time Момент времени по часам состояния
+         * @param now  Текущее время по часам состояния
+         * @return Момент времени по {@link System#nanoTime()}
+         */
+        protected long toNanoTime(long time, long now) {
+            return time;
+        }
+
+        /**
+         * Метод для ограничения прочитанного теоретического времени прибытия перед расчетом ожидания.
+         * Ограниченное значение сохраняется в состоянии, поэтому следующие запросы отсчитываются уже от него.
+         *
+         * @param tat Теоретическое время прибытия из состояния
+         * @param now Текущее время по часам состояния
+         * @return Теоретическое время прибытия, используемое в расчете
+         */
+        protected long limitArrivalTime(long tat, long now) {
+            return tat;
+        }
+
+        @Override
+        public void acquire() throws InterruptedException {
+            sleepUntil(reserve());
+        }
+
+        @Override
+        public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+            long timeoutNanos = unit.toNanos(timeout);
+            while (true) {
+                long now = currentTime();
+                long tat = loadArrivalTime();
+                long limited = limitArrivalTime(tat, now);
+                if (limited != tat) {
+                    compareAndSetArrivalTime(tat, limited);
+                    continue;
+                }
+                long sendAt = sendTime(tat, now);
+                if (sendAt - now > timeoutNanos) {
+                    return false;
+                }
+                if (compareAndSetArrivalTime(tat, nextArrivalTime(tat, now))) {
+                    sleepUntil(toNanoTime(sendAt, now));
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public long reserve() {
+            while (true) {
+                long now = currentTime();
+                long tat = loadArrivalTime();
+                long limited = limitArrivalTime(tat, now);
+                if (limited != tat) {
+                    compareAndSetArrivalTime(tat, limited);
+                    continue;
+                }
+                if (compareAndSetArrivalTime(tat, nextArrivalTime(tat, now))) {
+                    return toNanoTime(sendTime(tat, now), now);
+                }
+            }
+        }
+
+        /**
+         * Метод для расчета момента, когда запрос укладывается в лимит
+         */
+        private long sendTime(long tat, long now) {
+            long earliest = tat - burstTolerance;
+            return earliest - now > 0 ? earliest : now;
+        }
+
+        /**
+         * Метод для расчета теоретического времени прибытия после выдачи разрешения
+         */
+        private long nextArrivalTime(long tat, long now) {
+            return (tat - now > 0 ? tat : now) + permitInterval();
+        }
+
+        /**
+         * Метод для ожидания наступления момента времени
+         *
+         * @param deadline Момент времени по {@link System#nanoTime()}
+         */
+        static void sleepUntil(long deadline) throws InterruptedException {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            }
+        }
+    }
+
+    /**
+     * Ограничитель в пределах одного процесса, состояние хранится в {@link AtomicLong}.
+     */
+    public static class TokenBucketRateLimiter extends AbstractTokenBucketRateLimiter {
+
+        private final AtomicLong theoreticalArrivalTime;
+
+        public TokenBucketRateLimiter(TimeUnit timeUnit, int requestLimit) {
+            this(timeUnit, requestLimit, 1);
+        }
+
+        public TokenBucketRateLimiter(TimeUnit timeUnit, int requestLimit, int burst) {
+            super(timeUnit, requestLimit, burst);
+            this.theoreticalArrivalTime = new AtomicLong(System.nanoTime());
+        }
+
+        @Override
+        protected long currentTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        protected long loadArrivalTime() {
+            return theoreticalArrivalTime.get();
+        }
+
+        @Override
+        protected boolean compareAndSetArrivalTime(long expected, long arrivalTime) {
+            return theoreticalArrivalTime.compareAndSet(expected, arrivalTime);
+        }
+    }
+
+    /**
+     * Ограничитель с адаптивной частотой запросов по схеме AIMD.
+     * Начинает с максимальной частоты, при ответах 429 и 503 или скачке времени ответа
+     * уменьшает ее в {@link #getDecreaseFactor()} раз, а после каждого успешного ответа увеличивает
+     * на {@link #getIncreaseStep()} / текущая частота, то есть примерно на {@link #getIncreaseStep()}
+     * за интервал при полном использовании лимита.
+     * <p>
+     * Ответы на запросы, отправленные до последнего снижения, частоту повторно не снижают,
+     * а следующее снижение возможно не раньше чем через {@link #getDecreaseCooldown()}:
+     * сервер с лимитом по окну продолжает отвечать 429, пока окно не сдвинется,
+     * и без паузы частота упала бы до минимума за одно окно.
+     * Скачком считается время ответа, превышающее скользящее среднее успешных ответов
+     * в {@link #getLatencyThreshold()} раз и не меньше чем на {@link #getMinLatencyIncrease()},
+     * чтобы обычный разброс быстрых ответов не снижал частоту.
+     */
+    public static class AdaptiveRateLimiter extends TokenBucketRateLimiter {
+
+        private static final double LATENCY_SMOOTHING = 0.1;
+
+        private final TimeUnit timeUnit;
+        private final long unitNanos;
+        private final double maxRequestLimit;
+        @Getter
+        @Setter
+        private int minRequestLimit = 1;
+        @Getter
+        @Setter
+        private double decreaseFactor = 0.5;
+        @Getter
+        @Setter
+        private double increaseStep = 1.0;
+        @Getter
+        @Setter
+        private double latencyThreshold = 3.0;
+        @Getter
+        @Setter
+        private Duration minLatencyIncrease = Duration.ofMillis(100);
+        @Getter
+        @Setter
+        private Duration decreaseCooldown;
+        @Getter
+        @Setter
+        private IntPredicate throttledStatus = status -> status == 429 || status == 503;
+        @Setter
+        private Consumer<RateAdjustment> listener;
+
+        private volatile long interval;
+        private double requestLimit;
+        private double baselineLatencyNanos;
+        private long lastDecreaseAt;
+        private boolean decreased;
+        @Getter
+        private volatile long decreaseCount;
+        @Getter
+        private volatile long increaseCount;
+
+        /**
+         * @param timeUnit        Интервал, на который действует лимит
+         * @param maxRequestLimit Максимальное количество запросов за интервал, с которого начинается подстройка
+         */
+        public AdaptiveRateLimiter(TimeUnit timeUnit, int maxRequestLimit) {
+            super(timeUnit, maxRequestLimit);
+            this.timeUnit = timeUnit;
+            this.unitNanos = timeUnit.toNanos(1);
+            this.maxRequestLimit = maxRequestLimit;
+            this.requestLimit = maxRequestLimit;
+            this.interval = nanosPerPermit;
+            this.decreaseCooldown = Duration.ofNanos(unitNanos);
+        }
+
+        @Override
+        protected long permitInterval() {
+            return interval;
+        }
+
+        /**
+         * @return Текущее допустимое количество запросов за интервал
+         */
+        public synchronized double getRequestLimit() {
+            return requestLimit;
+        }
+
+        @Override
+        public void onResponse(int statusCode, long sentAt, long roundTripNanos) {
+            RateAdjustment adjustment = null;
+            synchronized (this) {
+                boolean throttled = throttledStatus.test(statusCode);
+                boolean success = statusCode >= 200 && statusCode < 300;
+                boolean latencySpike = success && baselineLatencyNanos > 0
+                        && roundTripNanos > latencyThreshold * baselineLatencyNanos
+                        && roundTripNanos - baselineLatencyNanos > minLatencyIncrease.toNanos();
+                if (throttled || latencySpike) {
+                    if (canDecrease(sentAt)) {
+                        adjustment = adjust(Math.max(minRequestLimit, requestLimit * decreaseFactor),
+                                throttled ? "status " + statusCode : "latency spike");
+                        lastDecreaseAt = System.nanoTime();
+                        decreased = true;
+                        decreaseCount++;
+                    }
+                } else if (success) {
+                    baselineLatencyNanos = baselineLatencyNanos == 0 ? roundTripNanos
+                            : baselineLatencyNanos + (roundTripNanos - baselineLatencyNanos) * LATENCY_SMOOTHING;
+                    if (requestLimit < maxRequestLimit) {
+                        adjustment = adjust(Math.min(maxRequestLimit, requestLimit + increaseStep / requestLimit), "success");
+                        increaseCount++;
+                    }
+                }
+            }
+            if (adjustment != null) {
+                if (adjustment.getRequestLimit() < adjustment.getPreviousRequestLimit()) {
+                    logger.printf(Level.INFO, "Adaptive rate decreased from %.2f to %.2f requests per %s after %s",
+                            adjustment.getPreviousRequestLimit(), adjustment.getRequestLimit(), timeUnit, adjustment.getReason());
+                }
+                if (listener != null) {
+                    listener.accept(adjustment);
+                }
+            }
+        }
+
+        private boolean canDecrease(long sentAt) {
+            if (requestLimit <= minRequestLimit) {
+                return false;
+            }
+            return !decreased || sentAt - lastDecreaseAt >= 0 && System.nanoTime() - lastDecreaseAt >= decreaseCooldown.toNanos();
+        }
+
+        private RateAdjustment adjust(double newRequestLimit, String reason) {
+            RateAdjustment adjustment = new RateAdjustment(requestLimit, newRequestLimit, reason);
+            requestLimit = newRequestLimit;
+            interval = Math.max(1, (long) (unitNanos / newRequestLimit));
+            return adjustment;
+        }
+    }
+
+    /**
+     * Изменение частоты адаптивного ограничителя.
+     */
+    @Getter
+    public static class RateAdjustment {
+        private final double previousRequestLimit;
+        private final double requestLimit;
+        private final String reason;
+
+        private RateAdjustment(double previousRequestLimit, double requestLimit, String reason) {
+            this.previousRequestLimit = previousRequestLimit;
+            this.requestLimit = requestLimit;
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * Ограничитель, общий для всех процессов на машине, которые открыли один и тот же файл.
+     * Состояние хранится в небольшом отображаемом в память файле и изменяется атомарным CAS
+     * прямо в разделяемой памяти, без блокировок и сетевых сервисов. Блокировка файла берется
+     * только один раз, при инициализации.
+     * <p>
+     * Время отсчитывается в наносекундах от начала эпохи, а не по {@link System#nanoTime()},
+     * чтобы состояние оставалось корректным после перезагрузки машины.
+     * Поэтому ограничитель рассчитывает на то, что системные часы не переводятся скачком. При переводе назад
+     * сохраненное время прибытия оказывается в будущем, и оно ограничивается текущим временем плюс емкость корзины,
+     * умноженная на интервал: ожидание не растет на величину перевода. При переводе вперед запросы,
+     * уже назначенные на прежние моменты, могут совпасть с новыми, лимит превышается не больше, чем на их число.
+     * <p>
+     * Чтобы ограничение не срабатывало при обычной работе, {@link #acquire()} и {@link #tryAcquire(long, TimeUnit)}
+     * занимают только разрешение, доступное сразу, а до его появления ждут и проверяют состояние снова.
+     * Сохраненное время прибытия опережает текущее не больше, чем на емкость корзины. Его продвигает дальше
+     * только {@link #reserve()}, которым резервируются повторы, и при одновременных повторах разных процессов
+     * ограничение может сократить их ожидание.
+     * <p>
+     * Формат файла: признак формата, интервал между разрешениями, допуск пачки, теоретическое время прибытия.
+     */
+    public static class SharedTokenBucketRateLimiter extends AbstractTokenBucketRateLimiter {
+
+        private static final long MAGIC = 0x4352_5054_524C_0001L;
+        private static final int MAGIC_OFFSET = 0;
+        private static final int NANOS_PER_PERMIT_OFFSET = 8;
+        private static final int BURST_TOLERANCE_OFFSET = 16;
+        private static final int ARRIVAL_TIME_OFFSET = 24;
+        private static final int FILE_SIZE = 32;
+        private static final VarHandle LONG_VIEW = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+        private final MappedByteBuffer state;
+
+        private SharedTokenBucketRateLimiter(TimeUnit timeUnit, int requestLimit, int burst, MappedByteBuffer state) {
+            super(timeUnit, requestLimit, burst);
+            this.state = state;
+        }
+
+        public static SharedTokenBucketRateLimiter open(Path file, TimeUnit timeUnit, int requestLimit) throws IOException {
+            return open(file, timeUnit, requestLimit, 1);
+        }
+
+        /**
+         * Метод для открытия общего ограничителя.
+         * Первый процесс записывает в файл параметры лимита, остальные проверяют, что их параметры совпадают.
+         *
+         * @param file         Файл состояния ограничителя
+         * @param timeUnit     Интервал, на который действует лимит
+         * @param requestLimit Максимальное количество запросов за интервал
+         * @param burst        Емкость корзины
+         * @return Ограничитель
+         * @throws IOException если файл не удалось открыть
+         */
+        public static SharedTokenBucketRateLimiter open(Path file, TimeUnit timeUnit, int requestLimit, int burst) throws IOException {
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                MappedByteBuffer state = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+                SharedTokenBucketRateLimiter limiter = new SharedTokenBucketRateLimiter(timeUnit, requestLimit, burst, state);
+                limiter.initialize(file);
+                return limiter;
+            }
+        }
+
+        private void initialize(Path file) {
+            if ((long) LONG_VIEW.getVolatile(state, MAGIC_OFFSET) != MAGIC) {
+                LONG_VIEW.setVolatile(state, NANOS_PER_PERMIT_OFFSET, nanosPerPermit);
+                LONG_VIEW.setVolatile(state, BURST_TOLERANCE_OFFSET, burstTolerance);
+                LONG_VIEW.setVolatile(state, ARRIVAL_TIME_OFFSET, currentTime());
+                LONG_VIEW.setVolatile(state, MAGIC_OFFSET, MAGIC);
+                return;
+            }
+            long sharedNanosPerPermit = (long) LONG_VIEW.getVolatile(state, NANOS_PER_PERMIT_OFFSET);
+            long sharedBurstTolerance = (long) LONG_VIEW.getVolatile(state, BURST_TOLERANCE_OFFSET);
+            if (sharedNanosPerPermit != nanosPerPermit || sharedBurstTolerance != burstTolerance) {
+                throw new IllegalStateException("Rate limit in " + file + " differs from requested: "
+                        + sharedNanosPerPermit + " ns per permit, " + sharedBurstTolerance + " ns burst tolerance");
+            }
+        }
+
+        @Override
+        protected long currentTime() {
+            Instant now = Instant.now();
+            return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        }
+
+        @Override
+        protected long loadArrivalTime() {
+            return (long) LONG_VIEW.getVolatile(state, ARRIVAL_TIME_OFFSET);
+        }
+
+        @Override
+        protected boolean compareAndSetArrivalTime(long expected, long arrivalTime) {
+            return LONG_VIEW.compareAndSet(state, ARRIVAL_TIME_OFFSET, expected, arrivalTime);
+        }
+
+        @Override
+        protected long toNanoTime(long time, long now) {
+            return System.nanoTime() + (time - now);
+        }
+
+        @Override
+        protected long limitArrivalTime(long tat, long now) {
+            long latest = now + permitInterval() + burstTolerance;
+            return tat - latest > 0 ? latest : tat;
+        }
+
+        @Override
+        public void acquire() throws InterruptedException {
+            while (!super.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos());
+            }
+        }
+
+        @Override
+        public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!super.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.sleep(Math.min(remaining, waitNanos()));
+            }
+            return true;
+        }
+
+        /**
+         * @return Время до появления следующего разрешения, не больше интервала между разрешениями
+         */
+        private long waitNanos() {
+            long now = currentTime();
+            long wait = limitArrivalTime(loadArrivalTime(), now) - burstTolerance - now;
+            return Math.max(1, Math.min(wait, permitInterval()));
+        }
+    }
+}
@@ -0,0 +1,625 @@
+package com.example.crptapi;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class CrptApiTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private TestServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new TestServer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void inFlightRequestsAreBoundedByOption() throws Exception {
+        CrptApi.Options options = options();
+        options.setMaxInFlightRequests(2);
+        server.holdResponses();
+
+        CrptApi api = new CrptApi(TimeUnit.SECONDS, 1000, options);
+        List<CompletableFuture<CrptApi.CreateResult>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(api.createDocumentAsync(server.url("/create"), document("doc-" + i, 1), "signature"));
+        }
+        assertEquals(2, server.awaitRequests(2).size());
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertEquals(2, server.requests().size());
+        server.releaseResponses();
+
+        for (CompletableFuture<CrptApi.CreateResult> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS).isSuccess());
+        }
+        assertEquals(5, server.requests().size());
+        assertEquals(2, server.maxActiveRequests());
+    }
+
+    @Test
+    void errorResponseCompletesResultWithStatus() throws Exception {
+        server.setStatusCode(400);
+
+        CrptApi api = new CrptApi(TimeUnit.SECONDS, 100, options());
+        CrptApi.CreateResult result = api.createDocumentAsync(server.url("/create"), document("doc-1", 1), "signature")
+                .get(10, TimeUnit.SECONDS);
+
+        assertFalse(result.isSuccess());
+        assertEquals("doc-1", result.getDocId());
+        assertEquals(400, result.getStatusCode());
+        assertEquals("400", result.getResponse().getCode());
+        assertEquals("{\"code\":\"400\"}", result.getBody());
+    }
+
+    @Test
+    void rejectPolicyFailsSubmissionWhenQueueIsFull() throws Exception {
+        CrptApi.Options options = options();
+        options.setQueueCapacity(1);
+        options.setBackpressurePolicy(CrptApi.BackpressurePolicy.REJECT);
+        BlockingRateLimiter limiter = new BlockingRateLimiter();
+
+        CrptApi api = new CrptApi(limiter, options);
+        CompletableFuture<CrptApi.CreateResult> sending = api.createDocumentAsync(server.url("/create"), document("doc-1", 1), "signature");
+        limiter.awaitBlocked();
+        CompletableFuture<CrptApi.CreateResult> queued = api.createDocumentAsync(server.url("/create"), document("doc-2", 1), "signature");
+        CrptApi.CreateResult rejected = api.createDocumentAsync(server.url("/create"), document("doc-3", 1), "signature").join();
+        assertTrue(rejected.isRejected());
+        assertInstanceOf(RejectedExecutionException.class, rejected.getError());
+        limiter.release();
+
+        assertTrue(sending.get(10, TimeUnit.SECONDS).isSuccess());
+        assertTrue(queued.get(10, TimeUnit.SECONDS).isSuccess());
+        assertEquals(2, server.requests().size());
+    }
+
+    @Test
+    void dropOldestReplacesQueuedTask() throws Exception {
+        CrptApi.Options options = options();
+        options.setQueueCapacity(1);
+        options.setBackpressurePolicy(CrptApi.BackpressurePolicy.DROP_OLDEST);
+        BlockingRateLimiter limiter = new BlockingRateLimiter();
+
+        CrptApi api = new CrptApi(limiter, options);
+        CompletableFuture<CrptApi.CreateResult> sending = api.createDocumentAsync(server.url("/create"), document("doc-1", 1), "signature");
+        limiter.awaitBlocked();
+        CompletableFuture<CrptApi.CreateResult> dropped = api.createDocumentAsync(server.url("/create"), document("doc-2", 1), "signature");
+        CompletableFuture<CrptApi.CreateResult> queued = api.createDocumentAsync(server.url("/create"), document("doc-3", 1), "signature");
+        assertTrue(dropped.join().isRejected());
+        limiter.release();
+
+        assertTrue(sending.get(10, TimeUnit.SECONDS).isSuccess());
+        assertTrue(queued.get(10, TimeUnit.SECONDS).isSuccess());
+    }
+
+    @Test
+    void nonPositiveQueueCapacityIsRejected() {
+        CrptApi.Options options = options();
+        options.setQueueCapacity(0);
+
+        assertThrows(IllegalArgumentException.class, () -> new CrptApi(TimeUnit.SECONDS, 100, options));
+    }
+
+    @Test
+    void batchResultsFollowDocumentOrder() throws Exception {
+        CrptApi api = new CrptApi(TimeUnit.SECONDS, 1000, options());
+        List<CrptApi.Document> documents = List.of(document("doc-1", 1), document("doc-2", 2), document("doc-3", 3));
+
+        CrptApi.BatchResult batch = api.createDocuments(server.url("/create"), documents, "signature").get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of("doc-1", "doc-2", "doc-3"), batch.getResults().stream().map(CrptApi.CreateResult::getDocId).toList());
+        assertEquals(3, batch.getSuccessCount());
+        assertTrue(batch.getFailures().isEmpty());
+        assertEquals(3, server.requests().size());
+    }
+
+    @Test
+    void unacknowledgedDocumentIsReplayedOnStartup(@TempDir Path directory) throws Exception {
+        journal(directory);
+        CrptApi.Options options = options();
+        options.setJournalDirectory(directory);
+        options.setJournalSegmentSize(64 * 1024);
+
+        new CrptApi(TimeUnit.SECONDS, 100, options);
+
+        List<TestServer.Request> requests = server.awaitRequests(1);
+        assertEquals(1, requests.size());
+        assertEquals("doc-1", JSON.readTree(requests.get(0).text()).get("docId").asText());
+        awaitCondition(() -> pendingCount(directory) == 0);
+    }
+
+    @Test
+    void replayedDocumentRejectedByServerIsAcknowledged(@TempDir Path directory) throws Exception {
+        journal(directory);
+        server.setStatusCode(400);
+        CrptApi.Options options = options();
+        options.setJournalDirectory(directory);
+        options.setJournalSegmentSize(64 * 1024);
+
+        try (CrptApi api = new CrptApi(TimeUnit.SECONDS, 100, options)) {
+            awaitCondition(() -> api.getMetrics().getFailedCount() == 1);
+        }
+
+        assertEquals(1, server.requests().size());
+        assertEquals(0, CrptApi.DocumentJournal.open(directory, 64 * 1024).getPendingCount());
+    }
+
+    @Test
+    void replayStopsAfterMaxReplays(@TempDir Path directory) throws Exception {
+        journal(directory);
+        server.setStatusCode(503);
+        CrptApi.Options options = options();
+        options.setJournalDirectory(directory);
+        options.setJournalSegmentSize(64 * 1024);
+        options.setRetryPolicy(CrptApi.RetryPolicy.none());
+        options.setMaxJournalReplays(1);
+
+        try (CrptApi api = new CrptApi(TimeUnit.SECONDS, 100, options)) {
+            awaitCondition(() -> api.getMetrics().getFailedCount() == 1);
+        }
+        assertEquals(1, CrptApi.DocumentJournal.open(directory, 64 * 1024).pendingEntries().get(0).getReplayCount());
+
+        try (CrptApi ignored = new CrptApi(TimeUnit.SECONDS, 100, options)) {
+            assertEquals(1, server.requests().size());
+        }
+        assertEquals(0, CrptApi.DocumentJournal.open(directory, 64 * 1024).getPendingCount());
+    }
+
+    @Test
+    void retryWaitsForRetryAfter() throws Exception {
+        server.enqueueResponse(503, Map.of("Retry-After", "1"));
+        CrptApi.Options options = options();
+        options.setRetryPolicy(fastRetries(5));
+
+        CrptApi api = new CrptApi(TimeUnit.SECONDS, 100, options);
+        CrptApi.CreateResult result = api.createDocumentAsync(server.url("/create"), document("doc-1", 1), "signature")
+                .get(10, TimeUnit.SECONDS);
+
+        assertTrue(result.isSuccess());
+        assertEquals("created", result.getResponse().getValue());
+        assertNull(result.getBody());
+        List<TestServer.Request> requests = server.requests();
+        assertEquals(2, requests.size());
+        long pause = requests.get(1).receivedAt() - requests.get(0).receivedAt();
+        assertTrue(pause >= TimeUnit.MILLISECONDS.toNanos(950), "Retried after " + TimeUnit.NANOSECONDS.toMillis(pause) + " ms");
+    }
+
+    @Test
+    void retriesStopAfterMaxAttempts() throws Exception {
+        server.setStatusCode(503);
+        CrptApi.Options options = options();
+        options.setRetryPolicy(fastRetries(3));
+
+        CrptApi api = new CrptApi(TimeUnit.SECONDS, 100, options);
+        CrptApi.CreateResult result = api.createDocumentAsync(server.url("/create"), document("doc-1", 1), "signature")
+                .get(10, TimeUnit.SECONDS);
+
+        assertFalse(result.isSuccess());
+        assertEquals(503, result.getStatusCode());
+        assertEquals(3, server.requests().size());
+    }
+
+    @Test
+    void retryAfterCloseFailsResult() throws Exception {
+        server.setStatusCode(503);
+        server.holdResponses();
+        CrptApi.Options options = options();
+        options.setRetryPolicy(fastRetries(3));
+
+        CrptApi api = new CrptApi(TimeUnit.SECONDS, 100, options);
+        CompletableFuture<CrptApi.CreateResult> result = api.createDocumentAsync(server.url("/create"), document("doc-1", 1), "signature");
+        server.awaitRequests(1);
+        api.close();
+        server.releaseResponses();
+
+        CrptApi.CreateResult createResult = result.get(10, TimeUnit.SECONDS);
+        assertFalse(createResult.isSuccess());
+        assertFalse(createResult.isRejected());
+        assertInstanceOf(IllegalStateException.class, createResult.getError());
+        assertEquals(1, server.requests().size());
+    }
+
+    @Test
+    void streamedBodyMatchesStringBodyAcrossRetries() throws Exception {
+        server.enqueueResponse(503, Map.of());
+        CrptApi.Options streaming = options();
+        streaming.setBodyEncoding(CrptApi.BodyEncoding.STREAMING);
+        streaming.setBufferChunkSize(64);
+        streaming.setRetryPolicy(fastRetries(2));
+        CrptApi.Options string = options();
+        string.setBodyEncoding(CrptApi.BodyEncoding.STRING);
+
+        CrptApi streamingApi = new CrptApi(TimeUnit.SECONDS, 100, streaming);
+        assertTrue(streamingApi.createDocumentAsync(server.url("/streaming"), document("doc-1", 20), "signature")
+                .get(10, TimeUnit.SECONDS).isSuccess());
+        CrptApi stringApi = new CrptApi(TimeUnit.SECONDS, 100, string);
+        assertTrue(stringApi.createDocumentAsync(server.url("/string"), document("doc-1", 20), "signature")
+                .get(10, TimeUnit.SECONDS).isSuccess());
+
+        List<TestServer.Request> requests = server.requests();
+        assertEquals(3, requests.size());
+        assertEquals("/string", requests.get(2).path());
+        String expected = requests.get(2).text();
+        assertTrue(expected.length() > 64 * 10);
+        assertEquals(expected, requests.get(0).text());
+        assertEquals(expected, requests.get(1).text());
+        assertEquals(20, JSON.readTree(expected).get("products").size());
+    }
+
+    @Test
+    void virtualThreadsBeforeJava21AreReported() {
+        assumeTrue(Runtime.version().feature() < 21);
+        CrptApi.Options options = options();
+        options.setExecutionMode(CrptApi.ExecutionMode.VIRTUAL_THREADS);
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> new CrptApi(TimeUnit.SECONDS, 100, options));
+        assertTrue(error.getMessage().contains("ExecutionMode.PLATFORM"));
+    }
+
+    @Test
+    void virtualThreadsSendDocumentsWithoutInFlightBound() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21);
+        CrptApi.Options options = options();
+        options.setExecutionMode(CrptApi.ExecutionMode.VIRTUAL_THREADS);
+        options.setMaxInFlightRequests(2);
+        server.holdResponses();
+
+        CrptApi api = new CrptApi(TimeUnit.SECONDS, 1000, options);
+        List<CompletableFuture<CrptApi.CreateResult>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(api.createDocumentAsync(server.url("/create"), document("doc-" + i, 1), "signature"));
+        }
+        assertEquals(5, server.awaitRequests(5).size());
+        server.releaseResponses();
+
+        for (CompletableFuture<CrptApi.CreateResult> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS).isSuccess());
+        }
+        assertEquals(5, server.maxActiveRequests());
+        api.close();
+    }
+
+    @Test
+    void metricsArePublishedThroughJmx() throws Exception {
+        server.enqueueResponse(503, Map.of());
+        server.enqueueResponse(400, Map.of());
+        CrptApi.Options options = options();
+        options.setJmxEnabled(true);
+        options.setJmxName("metrics-test");
+        options.setRetryPolicy(fastRetries(2));
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("CrptApi:type=Metrics,name=" + ObjectName.quote("metrics-test"));
+        try (CrptApi api = new CrptApi(TimeUnit.SECONDS, 100, options)) {
+            assertFalse(api.createDocumentAsync(server.url("/create"), document("doc-1", 1), "signature").get(10, TimeUnit.SECONDS).isSuccess());
+            assertTrue(api.createDocumentAsync(server.url("/create"), document("doc-2", 1), "signature").get(10, TimeUnit.SECONDS).isSuccess());
+            assertTrue(api.createDocumentAsync(server.url("/create"), document("doc-3", 1), "signature").get(10, TimeUnit.SECONDS).isSuccess());
+            awaitCondition(() -> api.getMetrics().getSucceededCount() + api.getMetrics().getFailedCount() == 3);
+
+            assertEquals(3L, mBeanServer.getAttribute(name, "SubmittedCount"));
+            assertEquals(2L, mBeanServer.getAttribute(name, "SucceededCount"));
+            assertEquals(1L, mBeanServer.getAttribute(name, "FailedCount"));
+            assertEquals(1L, mBeanServer.getAttribute(name, "RetryCount"));
+            CompositeData roundTrip = (CompositeData) mBeanServer.getAttribute(name, "RoundTripLatency");
+            assertEquals(4L, roundTrip.get("count"));
+            assertTrue((Long) roundTrip.get("maxMicros") >= (Long) roundTrip.get("p50Micros"));
+            assertEquals(3, api.getMetrics().getEnqueueToSendLatency().getCount());
+        }
+        assertFalse(mBeanServer.isRegistered(name));
+    }
+
+    @Test
+    void queuedSendsOfSameDocumentAndUrlAreCoalesced() throws Exception {
+        CrptApi.Options options = options();
+        options.setCoalesceByDocId(true);
+        BlockingRateLimiter limiter = new BlockingRateLimiter();
+
+        try (CrptApi api = new CrptApi(limiter, options)) {
+            CompletableFuture<CrptApi.CreateResult> blocker = api.createDocumentAsync(server.url("/first"), document("blocker", 1), "signature");
+            limiter.awaitBlocked();
+            CompletableFuture<CrptApi.CreateResult> first = api.createDocumentAsync(server.url("/first"), document("doc-1", 1, "v1"), "signature");
+            CompletableFuture<CrptApi.CreateResult> second = api.createDocumentAsync(server.url("/first"), document("doc-1", 1, "v2"), "signature");
+            CompletableFuture<CrptApi.CreateResult> otherUrl = api.createDocumentAsync(server.url("/second"), document("doc-1", 1, "v3"), "signature");
+            limiter.release();
+
+            assertTrue(blocker.get(10, TimeUnit.SECONDS).isSuccess());
+            assertTrue(first.get(10, TimeUnit.SECONDS).isSuccess());
+            assertTrue(second.get(10, TimeUnit.SECONDS).isSuccess());
+            assertTrue(otherUrl.get(10, TimeUnit.SECONDS).isSuccess());
+            assertEquals(1, api.getMetrics().getCoalescedCount());
+        }
+
+        List<JsonNode> firstUrl = new ArrayList<>();
+        List<JsonNode> secondUrl = new ArrayList<>();
+        for (TestServer.Request request : server.requests()) {
+            JsonNode body = JSON.readTree(request.text());
+            if (!body.get("docId").asText().equals("blocker")) {
+                (request.path().equals("/first") ? firstUrl : secondUrl).add(body);
+            }
+        }
+        assertEquals(1, firstUrl.size());
+        assertEquals("v2", firstUrl.get(0).get("docStatus").asText());
+        assertEquals(1, secondUrl.size());
+        assertEquals("v3", secondUrl.get(0).get("docStatus").asText());
+    }
+
+    @Test
+    void lanesShareBudgetByWeight() throws Exception {
+        CrptApi.Options options = options();
+        options.setLaneWeights(Map.of("high", 3, "low", 1));
+        options.setMaxInFlightRequests(1);
+        BlockingRateLimiter limiter = new BlockingRateLimiter();
+        List<CompletableFuture<CrptApi.CreateResult>> results = new ArrayList<>();
+
+        try (CrptApi api = new CrptApi(limiter, options)) {
+            results.add(api.createDocumentAsync(server.url("/create"), document("blocker", 1), "signature"));
+            limiter.awaitBlocked();
+            for (int i = 0; i < 8; i++) {
+                results.add(api.createDocumentAsync(server.url("/create"), document("low-" + i, 1), "signature", "low"));
+            }
+            for (int i = 0; i < 8; i++) {
+                results.add(api.createDocumentAsync(server.url("/create"), document("high-" + i, 1), "signature", "high"));
+            }
+            assertEquals(8, api.getQueueDepth("high"));
+            limiter.release();
+            for (CompletableFuture<CrptApi.CreateResult> result : results) {
+                assertTrue(result.get(10, TimeUnit.SECONDS).isSuccess());
+            }
+            assertTrue(api.getMetrics().getLanes().stream().allMatch(lane -> lane.getQueueDepth() == 0));
+        }
+
+        List<String> sent = new ArrayList<>();
+        for (TestServer.Request request : server.requests()) {
+            sent.add(JSON.readTree(request.text()).get("docId").asText());
+        }
+        assertEquals(17, sent.size());
+        long highInFirstEight = sent.subList(1, 9).stream().filter(docId -> docId.startsWith("high-")).count();
+        assertTrue(highInFirstEight >= 5 && highInFirstEight <= 7, "Sent order: " + sent);
+    }
+
+    @Test
+    void endpointWithOwnLimiterDoesNotDelayOtherEndpoints() throws Exception {
+        BlockingRateLimiter slowLimiter = new BlockingRateLimiter();
+        CrptApi.Options options = options();
+        options.setEndpointRateLimiters(Map.of("**/slow/*", slowLimiter));
+
+        try (CrptApi api = new CrptApi(TimeUnit.SECONDS, 100, options)) {
+            CompletableFuture<CrptApi.CreateResult> slow = api.createDocumentAsync(server.url("/slow/create"), document("doc-1", 1), "signature");
+            slowLimiter.awaitBlocked();
+            CompletableFuture<CrptApi.CreateResult> queued = api.createDocumentAsync(server.url("/slow/create"), document("doc-2", 1), "signature");
+            CrptApi.CreateResult fast = api.createDocumentAsync(server.url("/fast/create"), document("doc-3", 1), "signature")
+                    .get(10, TimeUnit.SECONDS);
+
+            assertTrue(fast.isSuccess());
+            assertFalse(slow.isDone());
+            assertEquals(1, api.getQueueDepth());
+            assertEquals(options.getQueueCapacity() - 1, api.getQueueRemainingCapacity(server.url("/slow/create")));
+            slowLimiter.release();
+            assertTrue(slow.get(10, TimeUnit.SECONDS).isSuccess());
+            assertTrue(queued.get(10, TimeUnit.SECONDS).isSuccess());
+        }
+
+        assertEquals(List.of("/fast/create", "/slow/create", "/slow/create"),
+                server.requests().stream().map(TestServer.Request::path).toList());
+    }
+
+    @Test
+    void compressedBodyMatchesUncompressed() throws Exception {
+        CrptApi.Options compressed = options();
+        compressed.setCompressionThreshold(0);
+        CrptApi.Options plain = options();
+        plain.setBodyEncoding(CrptApi.BodyEncoding.STRING);
+
+        try (CrptApi compressing = new CrptApi(TimeUnit.SECONDS, 100, compressed);
+             CrptApi uncompressed = new CrptApi(TimeUnit.SECONDS, 100, plain)) {
+            assertTrue(compressing.createDocumentAsync(server.url("/gzip"), document("doc-1", 20), "signature").join().isSuccess());
+            assertTrue(uncompressed.createDocumentAsync(server.url("/plain"), document("doc-1", 20), "signature").join().isSuccess());
+        }
+
+        List<TestServer.Request> requests = server.requests();
+        TestServer.Request gzip = requests.stream().filter(request -> request.path().equals("/gzip")).findFirst().orElseThrow();
+        TestServer.Request text = requests.stream().filter(request -> request.path().equals("/plain")).findFirst().orElseThrow();
+        assertEquals("gzip", gzip.contentEncoding());
+        assertNull(text.contentEncoding());
+        assertEquals(text.text(), gzip.text());
+        assertEquals(20, JSON.readTree(gzip.text()).get("products").size());
+    }
+
+    @Test
+    void documentOverProductLimitIsSplitWhenEnabled() throws Exception {
+        CrptApi.Options options = options();
+        options.setMaxProductsPerDocument(2);
+        options.setSplitOversizedDocuments(true);
+
+        CrptApi.CreateResult result;
+        try (CrptApi api = new CrptApi(TimeUnit.SECONDS, 100, options)) {
+            result = api.createDocumentAsync(server.url("/create"), document("doc-1", 5), "signature").get(10, TimeUnit.SECONDS);
+        }
+
+        assertTrue(result.isSuccess());
+        assertEquals("doc-1", result.getDocId());
+        assertEquals(List.of("doc-1-0", "doc-1-2", "doc-1-4"), result.getChunks().stream().map(CrptApi.CreateResult::getDocId).toList());
+        List<String> sent = new ArrayList<>();
+        for (TestServer.Request request : server.requests()) {
+            sent.add(JSON.readTree(request.text()).get("docId").asText());
+        }
+        assertEquals(List.of("doc-1-0", "doc-1-2", "doc-1-4"), sent);
+    }
+
+    @Test
+    void documentOverProductLimitFailsWhenSplittingDisabled() throws Exception {
+        CrptApi.Options options = options();
+        options.setMaxProductsPerDocument(2);
+
+        CrptApi.CreateResult result;
+        try (CrptApi api = new CrptApi(TimeUnit.SECONDS, 100, options)) {
+            result = api.createDocumentAsync(server.url("/create"), document("doc-1", 5), "signature").get(10, TimeUnit.SECONDS);
+        }
+
+        assertFalse(result.isSuccess());
+        assertInstanceOf(IllegalArgumentException.class, result.getError());
+        assertTrue(server.requests().isEmpty());
+    }
+
+    @Test
+    void documentOverByteLimitIsSplitBySize() throws Exception {
+        CrptApi.Options options = options();
+        options.setMaxDocumentBytes(1024);
+        options.setSplitOversizedDocuments(true);
+
+        CrptApi.CreateResult result;
+        try (CrptApi api = new CrptApi(TimeUnit.SECONDS, 100, options)) {
+            result = api.createDocumentAsync(server.url("/create"), document("doc-1", 16), "signature").get(10, TimeUnit.SECONDS);
+        }
+
+        assertTrue(result.isSuccess());
+        assertTrue(result.getChunks().size() > 1);
+        int products = 0;
+        for (TestServer.Request request : server.requests()) {
+            assertTrue(request.body().length <= 1024, "Chunk of " + request.body().length + " bytes");
+            products += JSON.readTree(request.text()).get("products").size();
+        }
+        assertEquals(16, products);
+    }
+
+    @Test
+    void documentWithinByteLimitIsSentWhole() throws Exception {
+        CrptApi.Options options = options();
+        options.setMaxDocumentBytes(64 * 1024);
+        options.setSplitOversizedDocuments(true);
+
+        CrptApi.CreateResult result;
+        try (CrptApi api = new CrptApi(TimeUnit.SECONDS, 100, options)) {
+            result = api.createDocumentAsync(server.url("/create"), document("doc-1", 16), "signature").get(10, TimeUnit.SECONDS);
+        }
+
+        assertTrue(result.isSuccess());
+        assertTrue(result.getChunks().isEmpty());
+        assertEquals(1, server.requests().size());
+        assertEquals("doc-1", JSON.readTree(server.requests().get(0).text()).get("docId").asText());
+    }
+
+    private static CrptApi.RetryPolicy fastRetries(int maxAttempts) {
+        CrptApi.RetryPolicy retryPolicy = new CrptApi.RetryPolicy();
+        retryPolicy.setMaxAttempts(maxAttempts);
+        retryPolicy.setInitialBackoff(Duration.ofMillis(10));
+        retryPolicy.setJitter(0);
+        return retryPolicy;
+    }
+
+    private static CrptApi.Options options() {
+        CrptApi.Options options = new CrptApi.Options();
+        options.setJmxEnabled(false);
+        return options;
+    }
+
+    private static CrptApi.Document document(String docId, int products) {
+        return document(docId, products, "CREATED");
+    }
+
+    private static CrptApi.Document document(String docId, int products, String status) {
+        CrptApi.Document document = new CrptApi.Document();
+        document.setDocId(docId);
+        document.setDocStatus(status);
+        document.setDocType("LP_INTRODUCE_GOODS");
+        document.setOwnerInn("7700000000");
+        List<CrptApi.Product> items = new ArrayList<>();
+        for (int i = 0; i < products; i++) {
+            CrptApi.Product product = new CrptApi.Product();
+            product.setUitCode("010463003407001221CMK" + String.format("%05d", i));
+            product.setTnvedCode("6401100000");
+            product.setOwnerInn("7700000000");
+            items.add(product);
+        }
+        document.setProducts(items);
+        return document;
+    }
+
+    private void journal(Path directory) throws IOException {
+        CrptApi.DocumentJournal journal = CrptApi.DocumentJournal.open(directory, 64 * 1024);
+        journal.append(server.url("/create"), "signature", "doc-1", JSON.writeValueAsString(JSON.createObjectNode().put("docId", "doc-1")));
+        journal.close();
+    }
+
+    private static int pendingCount(Path directory) {
+        try {
+            return CrptApi.DocumentJournal.open(directory, 64 * 1024).getPendingCount();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not reached");
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    /**
+     * Ограничитель, который задерживает отправки до вызова {@link #release()}, чтобы следующие задачи ждали в очереди.
+     */
+    private static class BlockingRateLimiter implements CrptApi.RateLimiter {
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public void acquire() throws InterruptedException {
+            blocked.countDown();
+            released.await();
+        }
+
+        @Override
+        public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+            acquire();
+            return true;
+        }
+
+        @Override
+        public long reserve() {
+            return System.nanoTime();
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        }
+
+        void release() {
+            released.countDown();
+        }
+    }
+}
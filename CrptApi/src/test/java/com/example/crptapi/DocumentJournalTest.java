@@ -0,0 +1,173 @@
+package com.example.crptapi;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentJournalTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void unacknowledgedEntriesSurviveReopen() throws IOException {
+        CrptApi.DocumentJournal journal = CrptApi.DocumentJournal.open(directory, SEGMENT_SIZE);
+        long first = journal.append("/create", "signature", "doc-1", "{\"docId\":\"doc-1\"}");
+        long second = journal.append("/create", "signature", "doc-2", "{\"docId\":\"doc-2\"}");
+        long third = journal.append("/create", null, "doc-3", "{\"docId\":\"doc-3\"}");
+        journal.acknowledge(second);
+        journal.close();
+
+        CrptApi.DocumentJournal reopened = CrptApi.DocumentJournal.open(directory, SEGMENT_SIZE);
+        List<CrptApi.DocumentJournal.JournalEntry> entries = reopened.pendingEntries();
+
+        assertEquals(List.of(first, third), entries.stream().map(CrptApi.DocumentJournal.JournalEntry::getId).toList());
+        assertEquals("/create", entries.get(0).getUrl());
+        assertEquals("signature", entries.get(0).getSignature());
+        assertEquals("doc-1", entries.get(0).getDocId());
+        assertEquals("{\"docId\":\"doc-1\"}", entries.get(0).getBody());
+        assertEquals(0, entries.get(0).getReplayCount());
+        assertNull(entries.get(1).getSignature());
+        assertTrue(reopened.append("/create", "signature", "doc-4", "{}") > third);
+    }
+
+    @Test
+    void replayCountIsPersisted() throws IOException {
+        CrptApi.DocumentJournal journal = CrptApi.DocumentJournal.open(directory, SEGMENT_SIZE);
+        long id = journal.append("/create", "signature", "doc-1", "{\"docId\":\"doc-1\"}");
+        assertEquals(1, journal.markReplayed(id));
+        assertEquals(2, journal.markReplayed(id));
+        journal.close();
+
+        CrptApi.DocumentJournal reopened = CrptApi.DocumentJournal.open(directory, SEGMENT_SIZE);
+        List<CrptApi.DocumentJournal.JournalEntry> entries = reopened.pendingEntries();
+
+        assertEquals(1, entries.size());
+        assertEquals(id, entries.get(0).getId());
+        assertEquals(2, entries.get(0).getReplayCount());
+        assertEquals("{\"docId\":\"doc-1\"}", entries.get(0).getBody());
+    }
+
+    @Test
+    void acknowledgedSegmentsAreDeleted() throws IOException {
+        CrptApi.DocumentJournal journal = CrptApi.DocumentJournal.open(directory, 512);
+        long kept = journal.append("/create", "signature", "kept", body(0));
+        for (int i = 1; i < 40; i++) {
+            journal.acknowledge(journal.append("/create", "signature", "doc-" + i, body(i)));
+        }
+        journal.close();
+
+        assertTrue(segmentCount() <= 2, "Segments left: " + segmentCount());
+        CrptApi.DocumentJournal reopened = CrptApi.DocumentJournal.open(directory, 512);
+        List<CrptApi.DocumentJournal.JournalEntry> entries = reopened.pendingEntries();
+        assertEquals(1, entries.size());
+        assertEquals(kept, entries.get(0).getId());
+        assertEquals(body(0), entries.get(0).getBody());
+    }
+
+    @Test
+    void longPendingEntryDoesNotKeepSegmentsAlive() throws IOException {
+        CrptApi.DocumentJournal journal = CrptApi.DocumentJournal.open(directory, 512);
+        String keptBody = "{\"docId\":\"kept\",\"description\":\"" + "x".repeat(200) + "\"}";
+        long kept = journal.append("/create", "signature", "kept", keptBody);
+        for (int i = 1; i < 100; i++) {
+            journal.acknowledge(journal.append("/create", "signature", "doc-" + i, body(i)));
+        }
+        journal.close();
+
+        assertTrue(segmentCount() <= 3, "Segments left: " + segmentCount());
+        CrptApi.DocumentJournal reopened = CrptApi.DocumentJournal.open(directory, 512);
+        List<CrptApi.DocumentJournal.JournalEntry> entries = reopened.pendingEntries();
+        assertEquals(List.of(kept), entries.stream().map(CrptApi.DocumentJournal.JournalEntry::getId).toList());
+        assertEquals(keptBody, entries.get(0).getBody());
+    }
+
+    @Test
+    void closedJournalRejectsCalls() throws IOException {
+        CrptApi.DocumentJournal journal = CrptApi.DocumentJournal.open(directory, SEGMENT_SIZE);
+        long id = journal.append("/create", "signature", "doc-1", body(1));
+        journal.close();
+        journal.close();
+
+        assertThrows(IllegalStateException.class, () -> journal.append("/create", "signature", "doc-2", body(2)));
+        assertThrows(IllegalStateException.class, () -> journal.acknowledge(id));
+        assertThrows(IllegalStateException.class, () -> journal.markReplayed(id));
+        assertThrows(IllegalStateException.class, journal::pendingEntries);
+        assertEquals(List.of(id), CrptApi.DocumentJournal.open(directory, SEGMENT_SIZE).pendingEntries().stream()
+                .map(CrptApi.DocumentJournal.JournalEntry::getId).toList());
+    }
+
+    @Test
+    void damagedRecordIsTruncated() throws IOException {
+        CrptApi.DocumentJournal journal = CrptApi.DocumentJournal.open(directory, SEGMENT_SIZE);
+        long first = journal.append("/create", "signature", "doc-1", "first body");
+        journal.append("/create", "signature", "doc-2", "second body");
+        journal.close();
+        corrupt("second body");
+
+        CrptApi.DocumentJournal reopened = CrptApi.DocumentJournal.open(directory, SEGMENT_SIZE);
+
+        assertEquals(List.of(first), reopened.pendingEntries().stream().map(CrptApi.DocumentJournal.JournalEntry::getId).toList());
+    }
+
+    private static String body(int index) {
+        return "{\"docId\":\"doc-" + index + "\",\"docType\":\"LP_INTRODUCE_GOODS\"}";
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    /**
+     * Метод для изменения байта внутри записи, содержащей заданный текст
+     */
+    private void corrupt(String text) throws IOException {
+        byte[] pattern = text.getBytes(StandardCharsets.UTF_8);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                    int position = indexOf(buffer, pattern);
+                    if (position >= 0) {
+                        buffer.put(position, (byte) (buffer.get(position) ^ 0xFF));
+                        buffer.force();
+                        return;
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("Record not found: " + text);
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= buffer.capacity(); i++) {
+            int j = 0;
+            while (j < pattern.length && buffer.get(i + j) == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
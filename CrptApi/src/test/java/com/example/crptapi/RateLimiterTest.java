@@ -0,0 +1,182 @@
+package com.example.crptapi;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    void reservationsFromManyThreadsAreSpacedByInterval() throws Exception {
+        CrptApi.TokenBucketRateLimiter limiter = new CrptApi.TokenBucketRateLimiter(TimeUnit.SECONDS, 1000);
+        int perThread = 50;
+
+        List<Long> sendTimes = runConcurrently(() -> {
+            List<Long> times = new ArrayList<>();
+            for (int i = 0; i < perThread; i++) {
+                times.add(limiter.reserve());
+            }
+            return times;
+        });
+
+        assertEquals(THREADS * perThread, sendTimes.size());
+        Collections.sort(sendTimes);
+        long interval = TimeUnit.MILLISECONDS.toNanos(1);
+        for (int i = 1; i < sendTimes.size(); i++) {
+            assertTrue(sendTimes.get(i) - sendTimes.get(i - 1) >= interval,
+                    "Permits " + (i - 1) + " and " + i + " are closer than the interval");
+        }
+    }
+
+    @Test
+    void burstIsGrantedWithoutWaitingAndThenExhausted() throws Exception {
+        CrptApi.TokenBucketRateLimiter limiter = new CrptApi.TokenBucketRateLimiter(TimeUnit.SECONDS, 10, 5);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(0, TimeUnit.NANOSECONDS));
+        }
+        assertFalse(limiter.tryAcquire(0, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    void sharedLimiterHoldsLimitAcrossInstances(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("limiter");
+        CrptApi.SharedTokenBucketRateLimiter first = CrptApi.SharedTokenBucketRateLimiter.open(file, TimeUnit.SECONDS, 100);
+        CrptApi.SharedTokenBucketRateLimiter second = CrptApi.SharedTokenBucketRateLimiter.open(file, TimeUnit.SECONDS, 100);
+        long duration = TimeUnit.MILLISECONDS.toNanos(500);
+        AtomicInteger thread = new AtomicInteger();
+        long deadline = System.nanoTime() + duration;
+
+        List<Long> permits = runConcurrently(() -> {
+            CrptApi.RateLimiter limiter = thread.getAndIncrement() % 2 == 0 ? first : second;
+            List<Long> times = new ArrayList<>();
+            while (System.nanoTime() < deadline) {
+                if (limiter.tryAcquire(20, TimeUnit.MILLISECONDS) && System.nanoTime() < deadline) {
+                    times.add(System.nanoTime());
+                }
+            }
+            return times;
+        });
+
+        assertTrue(permits.size() <= 52, "Too many permits: " + permits.size());
+        assertTrue(permits.size() >= 35, "Too few permits: " + permits.size());
+    }
+
+    @Test
+    void sharedLimiterRejectsDifferentLimit(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("limiter");
+        CrptApi.SharedTokenBucketRateLimiter.open(file, TimeUnit.SECONDS, 100);
+
+        assertThrows(IllegalStateException.class, () -> CrptApi.SharedTokenBucketRateLimiter.open(file, TimeUnit.SECONDS, 50));
+    }
+
+    @Test
+    void sharedLimiterWaitIsBoundedAfterClockStepBack(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("limiter");
+        CrptApi.SharedTokenBucketRateLimiter limiter = CrptApi.SharedTokenBucketRateLimiter.open(file, TimeUnit.SECONDS, 100);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer state = channel.map(FileChannel.MapMode.READ_WRITE, 0, 32);
+            state.order(ByteOrder.nativeOrder());
+            state.putLong(24, state.getLong(24) + TimeUnit.HOURS.toNanos(1));
+        }
+
+        assertTrue(limiter.tryAcquire(100, TimeUnit.MILLISECONDS));
+        assertTrue(limiter.tryAcquire(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void adaptiveLimiterHalvesRateOnThrottlingAndGrowsOnSuccess() {
+        CrptApi.AdaptiveRateLimiter limiter = new CrptApi.AdaptiveRateLimiter(TimeUnit.SECONDS, 100);
+        limiter.setDecreaseCooldown(Duration.ZERO);
+        long sentBeforeDecrease = System.nanoTime();
+
+        limiter.onResponse(429, sentBeforeDecrease, TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(50.0, limiter.getRequestLimit(), 1e-9);
+        assertEquals(50.0, limiter.getRatePerSecond(), 1e-9);
+
+        limiter.onResponse(503, sentBeforeDecrease, TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(50.0, limiter.getRequestLimit(), 1e-9);
+        assertEquals(1, limiter.getDecreaseCount());
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onResponse(200, System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(5));
+        }
+        assertEquals(51.0, limiter.getRequestLimit(), 0.05);
+        assertEquals(50, limiter.getIncreaseCount());
+
+        limiter.onResponse(429, System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(2, limiter.getDecreaseCount());
+        assertEquals(25.5, limiter.getRequestLimit(), 0.05);
+    }
+
+    @Test
+    void adaptiveLimiterDecreasesOnLatencySpikeDownToMinimum() {
+        CrptApi.AdaptiveRateLimiter limiter = new CrptApi.AdaptiveRateLimiter(TimeUnit.SECONDS, 8);
+        limiter.setDecreaseCooldown(Duration.ZERO);
+        limiter.setMinRequestLimit(2);
+        List<CrptApi.RateAdjustment> adjustments = new ArrayList<>();
+        limiter.setListener(adjustments::add);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.onResponse(200, System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        for (int i = 0; i < 5; i++) {
+            limiter.onResponse(200, System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(500));
+        }
+
+        assertEquals(2.0, limiter.getRequestLimit(), 1e-9);
+        assertEquals(2, limiter.getDecreaseCount());
+        assertEquals(List.of("latency spike", "latency spike"), adjustments.stream().map(CrptApi.RateAdjustment::getReason).toList());
+        assertEquals(8.0, adjustments.get(0).getPreviousRequestLimit(), 1e-9);
+    }
+
+    /**
+     * Метод для одновременного запуска задачи в нескольких потоках
+     *
+     * @return Объединенные результаты всех потоков
+     */
+    private static List<Long> runConcurrently(Callable<List<Long>> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<Long> results = new ArrayList<>();
+            for (Future<List<Long>> future : futures) {
+                results.addAll(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
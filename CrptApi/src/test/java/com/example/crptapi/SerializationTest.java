@@ -0,0 +1,57 @@
+package com.example.crptapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class SerializationTest {
+
+    private final ObjectMapper objectMapper = CrptApi.createObjectMapper();
+
+    @Test
+    void documentIsWrittenWithIsoDatesAndWithoutNulls() throws Exception {
+        CrptApi.Description description = new CrptApi.Description();
+        description.setParticipantInn("7700000001");
+        CrptApi.Product product = new CrptApi.Product();
+        product.setCertificateDocumentDate(LocalDate.of(2024, 1, 5));
+        product.setCertificate_DocumentNumber("cert-1");
+        product.setProductionDate(LocalDate.of(987, 12, 31));
+        product.setUitCode("010463003407001221CMK00001");
+        CrptApi.Document document = new CrptApi.Document();
+        document.setDescription(description);
+        document.setProducts(List.of(product));
+        document.setDocId("doc-1");
+        document.setImportRequest(true);
+        document.setProductionDate(LocalDate.of(2024, 11, 30));
+        document.setRegDate(LocalDate.of(-1, 6, 1));
+
+        String json = objectMapper.writeValueAsString(document);
+
+        assertEquals(objectMapper.readTree("""
+                {
+                  "description": {"participantInn": "7700000001"},
+                  "products": [{
+                    "certificateDocumentDate": "2024-01-05",
+                    "certificate_DocumentNumber": "cert-1",
+                    "productionDate": "0987-12-31",
+                    "uitCode": "010463003407001221CMK00001"
+                  }],
+                  "docId": "doc-1",
+                  "importRequest": true,
+                  "productionDate": "2024-11-30",
+                  "regDate": "-0001-06-01"
+                }
+                """), objectMapper.readTree(json));
+        assertFalse(json.contains("null"));
+    }
+
+    @Test
+    void emptyDocumentKeepsOnlyPrimitiveFields() throws Exception {
+        assertEquals("{\"importRequest\":false}", objectMapper.writeValueAsString(new CrptApi.Document()));
+    }
+}
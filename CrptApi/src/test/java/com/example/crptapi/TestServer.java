@@ -0,0 +1,151 @@
+package com.example.crptapi;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Локальный HTTP сервер, который запоминает полученные запросы и отвечает заданным кодом.
+ */
+class TestServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private final Queue<Response> scriptedResponses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
+    private volatile int statusCode = 200;
+    private volatile CountDownLatch responseGate = new CountDownLatch(0);
+
+    TestServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            int active = activeRequests.incrementAndGet();
+            maxActiveRequests.accumulateAndGet(active, Math::max);
+            try {
+                try (InputStream body = exchange.getRequestBody()) {
+                    requests.add(new Request(exchange.getRequestURI().getPath(),
+                            exchange.getRequestHeaders().getFirst("Content-Encoding"), body.readAllBytes(), System.nanoTime()));
+                }
+                try {
+                    responseGate.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                Response scripted = scriptedResponses.poll();
+                int status = scripted != null ? scripted.status() : statusCode;
+                byte[] response = (status < 300 ? "{\"value\":\"created\"}" : "{\"code\":\"" + status + "\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                if (scripted != null) {
+                    scripted.headers().forEach(exchange.getResponseHeaders()::add);
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            } finally {
+                activeRequests.decrementAndGet();
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String url(String path) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+    }
+
+    void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Метод для добавления ответа, который будет отдан на очередной запрос вместо ответа по умолчанию
+     *
+     * @param status Код ответа
+     * @param headers Заголовки ответа
+     */
+    void enqueueResponse(int status, Map<String, String> headers) {
+        scriptedResponses.add(new Response(status, headers));
+    }
+
+    /**
+     * Метод для задержки ответов до вызова {@link #releaseResponses()}
+     */
+    void holdResponses() {
+        responseGate = new CountDownLatch(1);
+    }
+
+    void releaseResponses() {
+        responseGate.countDown();
+    }
+
+    /**
+     * @return Наибольшее количество запросов, обрабатывавшихся сервером одновременно
+     */
+    int maxActiveRequests() {
+        return maxActiveRequests.get();
+    }
+
+    List<Request> requests() {
+        return List.copyOf(requests);
+    }
+
+    /**
+     * Метод для ожидания заданного количества запросов
+     */
+    List<Request> awaitRequests(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (requests.size() < count && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return requests();
+    }
+
+    @Override
+    public void close() {
+        releaseResponses();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Полученный запрос.
+     */
+    record Request(String path, String contentEncoding, byte[] body, long receivedAt) {
+
+        /**
+         * @return Тело запроса, распакованное, если оно сжато gzip
+         */
+        String text() throws IOException {
+            if (!"gzip".equals(contentEncoding)) {
+                return new String(body, StandardCharsets.UTF_8);
+            }
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    private record Response(int status, Map<String, String> headers) {
+    }
+}
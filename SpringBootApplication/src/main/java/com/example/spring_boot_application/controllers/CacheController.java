@@ -0,0 +1,34 @@
+/**
+ * Класс Контроллер Веб-приложения для просмотра состояния кэша второго уровня.
+ * Этот Контроллер передает статистику попаданий и промахов кэша по регионам в формате HTTP.
+ */
+
+package com.example.spring_boot_application.controllers;
+
+import com.example.spring_boot_application.dto.CacheRegionStatisticsDto;
+import com.example.spring_boot_application.services.CacheStatisticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/cache")
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final CacheStatisticsService cacheStatisticsService;
+
+    /**
+     * Метод для получения статистики кэша второго уровня по регионам.
+     *
+     * @return Получение ответа со статистикой кэша и кодом ответа HTTP.
+     */
+    @GetMapping("/statistics")
+    public ResponseEntity getStatistics() {
+        List<CacheRegionStatisticsDto> statistics = cacheStatisticsService.getStatistics();
+        return new ResponseEntity(statistics, HttpStatus.OK);
+    }
+}
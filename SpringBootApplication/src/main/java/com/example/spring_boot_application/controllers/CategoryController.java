@@ -7,13 +7,14 @@
 package com.example.spring_boot_application.controllers;
 
 import com.example.spring_boot_application.dto.CategoryDto;
+import com.example.spring_boot_application.dto.PageDto;
 import com.example.spring_boot_application.services.CategoryCRUDService;
+import com.example.spring_boot_application.services.ResourceVersion;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.Collection;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/categories")
@@ -24,13 +25,20 @@ public class CategoryController {
 
     /**
      * Метод для получения информации о категории по её уникальному идентификатору.
+     * Ответ содержит заголовок ETag. Если версия из заголовка If-None-Match не изменилась,
+     * возвращается ответ 304 без загрузки категории и её новостей.
      *
-     * @param id Уникальный идентификатор категории.
+     * @param id      Уникальный идентификатор категории.
+     * @param request Запрос с заголовками условного получения.
      * @return Получение ответа с информацией о категории и кодом ответа HTTP.
      */
     @GetMapping("/{id}")
-    public ResponseEntity getCategoryById(@PathVariable Long id) {
+    public ResponseEntity getCategoryById(@PathVariable Long id, WebRequest request) {
         try {
+            ResourceVersion version = categoryCRUDService.getVersion(id);
+            if (request.checkNotModified(version.etag())) {
+                return new ResponseEntity(HttpStatus.NOT_MODIFIED);
+            }
             CategoryDto category = categoryCRUDService.getById(id);
             return new ResponseEntity(category, HttpStatus.OK);
         } catch (Exception e) {
@@ -40,13 +48,32 @@ public class CategoryController {
     }
 
     /**
-     * Метод для получения списка всех категорий.
+     * Метод для постраничного получения списка категорий в порядке возрастания уникального идентификатора.
+     * Для получения следующей страницы в cursor передается nextCursor из ответа.
+     * Ответ содержит заголовок ETag. Если версия из заголовка If-None-Match не изменилась,
+     * возвращается ответ 304 без загрузки категорий и их новостей. Заголовок Last-Modified не передается:
+     * удаление новости не меняет время изменения остальных записей страницы.
      *
-     * @return Получения списка всех категорий.
+     * @param cursor  Курсор следующей страницы или null для первой страницы.
+     * @param size    Размер страницы, не больше {@link com.example.spring_boot_application.services.CRUDService#MAX_PAGE_SIZE}.
+     * @param request Запрос с заголовками условного получения.
+     * @return Получение ответа со страницей категорий и кодом ответа HTTP.
      */
     @GetMapping
-    public Collection<CategoryDto> getAllCategories() {
-        return categoryCRUDService.getAll();
+    public ResponseEntity getAllCategories(@RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "20") int size,
+                                           WebRequest request) {
+        try {
+            ResourceVersion version = categoryCRUDService.getPageVersion(cursor, size);
+            if (request.checkNotModified(version.etag())) {
+                return new ResponseEntity(HttpStatus.NOT_MODIFIED);
+            }
+            PageDto<CategoryDto> page = categoryCRUDService.getPage(cursor, size);
+            return new ResponseEntity(page, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            String message = "Некорректные параметры страницы: " + e.getMessage();
+            return new ResponseEntity(message, HttpStatus.BAD_REQUEST);
+        }
     }
 
     /**
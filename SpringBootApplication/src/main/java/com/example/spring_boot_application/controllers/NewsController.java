@@ -7,13 +7,17 @@
 package com.example.spring_boot_application.controllers;
 
 import com.example.spring_boot_application.dto.NewsDto;
+import com.example.spring_boot_application.dto.PageDto;
 import com.example.spring_boot_application.services.NewsCRUDService;
+import com.example.spring_boot_application.services.ResourceVersion;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.Collection;
+import java.util.Locale;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/news")
@@ -28,29 +32,49 @@ public class NewsController {
 
     /**
      * Метод для получения информации о новости по её уникальному идентификатору.
+     * Ответ содержит заголовки ETag и Last-Modified. Если версия из заголовка If-None-Match или If-Modified-Since
+     * не изменилась, возвращается ответ 304 без загрузки новости.
      *
-     * @param id Уникальный идентификатор новости.
+     * @param id      Уникальный идентификатор новости.
+     * @param request Запрос с заголовками условного получения.
      * @return Получение ответа с информацией о новости и кодом ответа HTTP.
      */
     @GetMapping("/{id}")
-    public ResponseEntity getNewsById(@PathVariable Long id) {
+    public ResponseEntity getNewsById(@PathVariable Long id, WebRequest request) {
         try {
+            ResourceVersion version = newsCRUDService.getVersion(id);
+            if (request.checkNotModified(version.etag(), version.lastModifiedMillis())) {
+                return new ResponseEntity(HttpStatus.NOT_MODIFIED);
+            }
             NewsDto newsDto = newsCRUDService.getById(id);
-            return new ResponseEntity(newsCRUDService.getById(id), HttpStatus.OK);
-        } catch (Exception e) {
-            String message = "Категория с ID " + id + " не найдена";
+            return new ResponseEntity(newsDto, HttpStatus.OK);
+        } catch (NoSuchElementException e) {
+            String message = "Новость с ID " + id + " не найдена";
             return new ResponseEntity(message, HttpStatus.NOT_FOUND);
         }
     }
 
     /**
-     * Метод для получения списка всех новостей.
+     * Метод для постраничного получения списка новостей.
+     * Для получения следующей страницы в cursor передается nextCursor из ответа.
      *
-     * @return Получения списка всех новостей.
+     * @param cursor Курсор следующей страницы или null для первой страницы.
+     * @param size   Размер страницы, не больше {@link com.example.spring_boot_application.services.CRUDService#MAX_PAGE_SIZE}.
+     * @param sort   Порядок новостей: id - в порядке добавления, date - от свежих к старым.
+     * @return Получение ответа со страницей новостей и кодом ответа HTTP.
      */
     @GetMapping
-    public Collection<NewsDto> getAllNews() {
-        return newsCRUDService.getAll();
+    public ResponseEntity getAllNews(@RequestParam(required = false) String cursor,
+                                     @RequestParam(defaultValue = "20") int size,
+                                     @RequestParam(defaultValue = "id") String sort) {
+        try {
+            NewsCRUDService.Order order = NewsCRUDService.Order.valueOf(sort.toUpperCase(Locale.ROOT));
+            PageDto<NewsDto> page = newsCRUDService.getPage(cursor, size, order);
+            return new ResponseEntity(page, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            String message = "Некорректные параметры страницы: " + e.getMessage();
+            return new ResponseEntity(message, HttpStatus.BAD_REQUEST);
+        }
     }
 
     /**
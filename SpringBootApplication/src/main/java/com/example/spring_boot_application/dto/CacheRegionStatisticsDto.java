@@ -0,0 +1,24 @@
+/**
+ * Класс-сущность для отображения статистики региона кэша второго уровня.
+ */
+
+package com.example.spring_boot_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheRegionStatisticsDto {
+
+    private String region;
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    /**
+     * Доля попаданий от всех обращений к региону, 0 при отсутствии обращений.
+     */
+    private double hitRatio;
+}
@@ -0,0 +1,23 @@
+/**
+ * Класс-сущность для отображения страницы записей, полученной постраничным запросом.
+ * Для получения следующей страницы значение nextCursor передается в параметре cursor,
+ * на последней странице nextCursor равен null.
+ */
+
+package com.example.spring_boot_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageDto<T> {
+
+    private List<T> items = new ArrayList<>();
+    private String nextCursor;
+}
@@ -8,7 +8,11 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 @Getter
@@ -16,7 +20,9 @@ import java.util.List;
 @NoArgsConstructor
 
 @Entity
-@Table(name = "category")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "category", indexes = @Index(name = "idx_category_title", columnList = "title", unique = true))
 public class Category {
 
     @Id
@@ -28,5 +34,19 @@ public class Category {
     private String title;
 
     @OneToMany(mappedBy = "category", cascade = CascadeType.ALL)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private List<News> news;
+
+    @Column(name = "modified_at")
+    private Instant modifiedAt;
+
+    /**
+     * Метод для обновления времени последнего изменения категории при каждой записи в базу данных.
+     * Время округляется до микросекунд, с которыми оно хранится в базе данных.
+     */
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        modifiedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
 }
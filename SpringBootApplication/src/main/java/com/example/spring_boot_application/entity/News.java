@@ -8,15 +8,20 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 
 @Getter
 @Setter
 @NoArgsConstructor
 
 @Entity
-@Table(name = "news")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "news", indexes = @Index(name = "idx_news_date_id", columnList = "date, id"))
 public class News {
 
     @Id
@@ -30,10 +35,23 @@ public class News {
     @Column(name = "text")
     private String text;
 
-    @Column(name = "date")
+    @Column(name = "date", nullable = false)
     private Instant date;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category")
     private Category category;
+
+    @Column(name = "modified_at")
+    private Instant modifiedAt;
+
+    /**
+     * Метод для обновления времени последнего изменения новости при каждой записи в базу данных.
+     * Время округляется до микросекунд, с которыми оно хранится в базе данных.
+     */
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        modifiedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
 }
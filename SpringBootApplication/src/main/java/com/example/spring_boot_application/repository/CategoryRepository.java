@@ -5,12 +5,94 @@
 package com.example.spring_boot_application.repository;
 
 import com.example.spring_boot_application.entity.Category;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+/**
+ * Методы, результат которых преобразуется в информацию для пользователя, загружают новости категорий
+ * тем же запросом через граф сущности, чтобы обход новостей не выполнял запрос на каждую категорию.
+ */
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
+    /**
+     * Метод для получения категории по названию. Название уникально, поиск выполняется по индексу idx_category_title.
+     *
+     * @param title Название категории.
+     * @return Категория.
+     */
     Optional<Category> findByTitle(String title);
+
+    @Override
+    @EntityGraph(attributePaths = "news")
+    Optional<Category> findById(Long id);
+
+    @Override
+    @EntityGraph(attributePaths = "news")
+    List<Category> findAll();
+
+    /**
+     * Метод для получения категорий вместе с их новостями одним запросом.
+     * Используется для страницы категорий: ограничение количества строк при загрузке коллекции через join
+     * Hibernate применяет в памяти, поэтому страница сначала выбирается без новостей, а затем догружается этим методом.
+     *
+     * @param ids Уникальные идентификаторы категорий.
+     * @return Категории с загруженными новостями в порядке возрастания идентификатора.
+     */
+    @Query("select distinct c from Category c left join fetch c.news where c.id in :ids order by c.id")
+    List<Category> findAllWithNewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Метод для получения категорий с идентификатором больше заданного в порядке возрастания идентификатора.
+     *
+     * @param id    Уникальный идентификатор последней категории предыдущей страницы, 0 для первой страницы.
+     * @param limit Максимальное количество категорий.
+     * @return Категории.
+     */
+    List<Category> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /**
+     * Метод для получения уникальных идентификаторов категорий с идентификатором больше заданного
+     * в порядке возрастания идентификатора. Выборка идет только по первичному ключу.
+     *
+     * @param id    Уникальный идентификатор последней категории предыдущей страницы, 0 для первой страницы.
+     * @param limit Максимальное количество категорий.
+     * @return Уникальные идентификаторы категорий.
+     */
+    @Query("select c.id from Category c where c.id > :id order by c.id")
+    List<Long> findIdsAfter(@Param("id") Long id, Limit limit);
+
+    /**
+     * Метод для получения сводного времени изменения категорий и их новостей без загрузки самих записей.
+     * Количество новостей учитывается отдельно, потому что удаление новости не меняет время изменения остальных.
+     *
+     * @param ids Уникальные идентификаторы категорий.
+     * @return Количество найденных категорий и их новостей и время последнего изменения.
+     */
+    @Query("select count(distinct c.id) as categoryCount, max(c.modifiedAt) as categoriesModifiedAt, "
+            + "max(n.modifiedAt) as newsModifiedAt, count(n.id) as newsCount "
+            + "from Category c left join c.news n where c.id in :ids")
+    CategoriesVersion findVersionByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Сводное время изменения категорий и их новостей.
+     */
+    interface CategoriesVersion {
+
+        long getCategoryCount();
+
+        Instant getCategoriesModifiedAt();
+
+        Instant getNewsModifiedAt();
+
+        long getNewsCount();
+    }
 }
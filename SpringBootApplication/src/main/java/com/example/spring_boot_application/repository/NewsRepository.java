@@ -5,9 +5,93 @@
 package com.example.spring_boot_application.repository;
 
 import com.example.spring_boot_application.entity.News;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Методы, результат которых преобразуется в информацию для пользователя, загружают категорию новости
+ * тем же запросом через граф сущности, чтобы получение названия категории не выполняло запрос на каждую новость.
+ */
 @Repository
 public interface NewsRepository extends JpaRepository<News, Long> {
+
+    @Override
+    @EntityGraph(attributePaths = "category")
+    Optional<News> findById(Long id);
+
+    @Override
+    @EntityGraph(attributePaths = "category")
+    List<News> findAll();
+
+    /**
+     * Метод для получения новостей с идентификатором больше заданного в порядке возрастания идентификатора.
+     * Выборка идет по первичному ключу, поэтому время запроса не зависит от номера страницы.
+     *
+     * @param id    Уникальный идентификатор последней новости предыдущей страницы, 0 для первой страницы.
+     * @param limit Максимальное количество новостей.
+     * @return Новости.
+     */
+    @EntityGraph(attributePaths = "category")
+    List<News> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /**
+     * Метод для получения самых свежих новостей.
+     *
+     * @param limit Максимальное количество новостей.
+     * @return Новости в порядке убывания даты и идентификатора.
+     */
+    @EntityGraph(attributePaths = "category")
+    @Query("select n from News n order by n.date desc, n.id desc")
+    List<News> findLatest(Limit limit);
+
+    /**
+     * Метод для получения новостей, следующих за заданной в порядке убывания даты и идентификатора.
+     * Условие n.date <= :date задает границу диапазона по индексу idx_news_date_id,
+     * поэтому выборка начинается сразу с позиции курсора, а не перебирает более свежие новости.
+     *
+     * @param date  Дата последней новости предыдущей страницы.
+     * @param id    Уникальный идентификатор последней новости предыдущей страницы.
+     * @param limit Максимальное количество новостей.
+     * @return Новости в порядке убывания даты и идентификатора.
+     */
+    @EntityGraph(attributePaths = "category")
+    @Query("select n from News n where n.date <= :date and (n.date < :date or n.id < :id) order by n.date desc, n.id desc")
+    List<News> findLatestBefore(@Param("date") Instant date, @Param("id") Long id, Limit limit);
+
+    /**
+     * Метод для получения даты новости без загрузки самой новости.
+     *
+     * @param id Уникальный идентификатор новости.
+     * @return Дата новости или пустое значение, если новости нет.
+     */
+    @Query("select n.date from News n where n.id = :id")
+    Optional<Instant> findDateById(@Param("id") Long id);
+
+    /**
+     * Метод для получения времени изменения новости и её категории без загрузки самих записей.
+     * Название категории входит в информацию о новости, поэтому изменение категории тоже меняет версию новости.
+     *
+     * @param id Уникальный идентификатор новости.
+     * @return Время изменения или пустое значение, если новости нет.
+     */
+    @Query("select n.modifiedAt as modifiedAt, c.modifiedAt as categoryModifiedAt from News n join n.category c where n.id = :id")
+    Optional<NewsVersion> findVersionById(@Param("id") Long id);
+
+    /**
+     * Время изменения новости и её категории.
+     */
+    interface NewsVersion {
+
+        Instant getModifiedAt();
+
+        Instant getCategoryModifiedAt();
+    }
 }
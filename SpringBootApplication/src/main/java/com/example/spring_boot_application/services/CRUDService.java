@@ -7,6 +7,12 @@ package com.example.spring_boot_application.services;
 import java.util.Collection;
 
 public interface CRUDService<T> {
+
+    /**
+     * Максимальное количество записей на одной странице постраничной выборки.
+     */
+    int MAX_PAGE_SIZE = 100;
+
     T getById(Long id);
     Collection<T> getAll();
     void create(T item);
@@ -0,0 +1,62 @@
+/**
+ * Класс-сервис для получения статистики кэша второго уровня Hibernate.
+ * Статистика собирается, когда включен параметр hibernate.generate_statistics.
+ */
+
+package com.example.spring_boot_application.services;
+
+import com.example.spring_boot_application.dto.CacheRegionStatisticsDto;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+@Service
+@Slf4j
+public class CacheStatisticsService {
+
+    private final Statistics statistics;
+
+    @Autowired
+    public CacheStatisticsService(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Метод для получения статистики попаданий и промахов по каждому региону кэша второго уровня.
+     *
+     * @return Статистика регионов, отсортированная по названию региона.
+     */
+    public List<CacheRegionStatisticsDto> getStatistics() {
+        log.info("Get cache statistics");
+        return Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(region -> mapToDto(region, statistics.getCacheRegionStatistics(region)))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Метод для преобразования статистики региона кэша в информацию для пользователя.
+     *
+     * @param region           Название региона.
+     * @param regionStatistics Статистика региона или null, если регион не найден.
+     * @return Информацию для пользователя или null.
+     */
+    private static CacheRegionStatisticsDto mapToDto(String region, CacheRegionStatistics regionStatistics) {
+        if (regionStatistics == null) {
+            return null;
+        }
+        long hits = regionStatistics.getHitCount();
+        long misses = regionStatistics.getMissCount();
+        double hitRatio = hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        return new CacheRegionStatisticsDto(region, hits, misses, regionStatistics.getPutCount(), hitRatio);
+    }
+}
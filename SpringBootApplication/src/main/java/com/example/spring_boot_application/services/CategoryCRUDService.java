@@ -7,6 +7,7 @@
 package com.example.spring_boot_application.services;
 
 import com.example.spring_boot_application.dto.CategoryDto;
+import com.example.spring_boot_application.dto.PageDto;
 import com.example.spring_boot_application.entity.Category;
 import com.example.spring_boot_application.repository.CategoryRepository;
 import lombok.RequiredArgsConstructor;
@@ -14,6 +15,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -21,6 +27,7 @@ import java.util.Collection;
 public class CategoryCRUDService implements CRUDService<CategoryDto> {
 
     private final CategoryRepository categoryRepository;
+    private final CategoryTitleCache categoryTitleCache;
 
     /**
      * Метод получения информации о категории по её уникальному идентификатору.
@@ -51,6 +58,71 @@ public class CategoryCRUDService implements CRUDService<CategoryDto> {
                 .toList();
     }
 
+    /**
+     * Метод для постраничного получения категорий в порядке возрастания уникального идентификатора.
+     * Каждая страница выбирается по первичному ключу сразу после последней категории предыдущей страницы,
+     * после чего новости всех категорий страницы загружаются одним запросом.
+     *
+     * @param cursor Курсор из предыдущей страницы или null для первой страницы.
+     * @param size   Размер страницы, не больше {@link CRUDService#MAX_PAGE_SIZE}.
+     * @return Страница категорий с курсором следующей страницы.
+     * @throws IllegalArgumentException если курсор поврежден.
+     */
+    public PageDto<CategoryDto> getPage(String cursor, int size) {
+        log.info("Get page after " + cursor);
+        int pageSize = KeysetPagination.pageSize(size);
+        Long after = cursor == null ? 0L : KeysetPagination.decodeId(cursor);
+        List<Category> rows = categoryRepository.findByIdGreaterThanOrderByIdAsc(after, KeysetPagination.limit(pageSize));
+        List<Long> ids = rows.stream()
+                .limit(pageSize)
+                .map(Category::getId)
+                .toList();
+        Map<Long, Category> withNews = ids.isEmpty() ? Map.of() : categoryRepository.findAllWithNewsByIdIn(ids)
+                .stream()
+                .collect(Collectors.toMap(Category::getId, Function.identity()));
+        return KeysetPagination.page(rows, pageSize,
+                category -> mapToDto(withNews.getOrDefault(category.getId(), category)),
+                category -> KeysetPagination.encode(category.getId()));
+    }
+
+    /**
+     * Метод для получения версии категории для условных запросов HTTP.
+     *
+     * @param id Уникальный идентификатор категории.
+     * @return Версия категории вместе с её новостями.
+     * @throws NoSuchElementException если категории нет.
+     */
+    public ResourceVersion getVersion(Long id) {
+        log.info("Get version by ID: " + id);
+        List<Long> ids = List.of(id);
+        CategoryRepository.CategoriesVersion version = categoryRepository.findVersionByIdIn(ids);
+        if (version.getCategoryCount() == 0) {
+            throw new NoSuchElementException("Category not found: " + id);
+        }
+        return mapToVersion(ids, version);
+    }
+
+    /**
+     * Метод для получения версии страницы категорий для условных запросов HTTP.
+     * Версия вычисляется по идентификаторам категорий страницы и сводному времени изменения категорий и их новостей,
+     * без загрузки категорий и новостей.
+     *
+     * @param cursor Курсор из предыдущей страницы или null для первой страницы.
+     * @param size   Размер страницы, не больше {@link CRUDService#MAX_PAGE_SIZE}.
+     * @return Версия страницы.
+     * @throws IllegalArgumentException если курсор поврежден.
+     */
+    public ResourceVersion getPageVersion(String cursor, int size) {
+        log.info("Get page version after " + cursor);
+        int pageSize = KeysetPagination.pageSize(size);
+        Long after = cursor == null ? 0L : KeysetPagination.decodeId(cursor);
+        List<Long> ids = categoryRepository.findIdsAfter(after, KeysetPagination.limit(pageSize));
+        if (ids.isEmpty()) {
+            return ResourceVersion.of(null, ids);
+        }
+        return mapToVersion(ids, categoryRepository.findVersionByIdIn(ids));
+    }
+
     /**
      * Метод для создания категории. Получает информацию от пользователя о категории
      * и сохраняет информацию в базу данных.
@@ -60,6 +132,7 @@ public class CategoryCRUDService implements CRUDService<CategoryDto> {
     @Override
     public void create(CategoryDto categoryDto) {
         categoryRepository.save(mapToEntity(categoryDto));
+        categoryTitleCache.invalidate();
     }
 
     /**
@@ -72,6 +145,7 @@ public class CategoryCRUDService implements CRUDService<CategoryDto> {
     @Override
     public void update(CategoryDto categoryDto) {
         categoryRepository.save(mapToEntity(categoryDto));
+        categoryTitleCache.invalidate();
     }
 
     /**
@@ -82,6 +156,7 @@ public class CategoryCRUDService implements CRUDService<CategoryDto> {
     @Override
     public void delete(Long id) {
         categoryRepository.deleteById(id);
+        categoryTitleCache.invalidate();
     }
 
     /**
@@ -101,6 +176,20 @@ public class CategoryCRUDService implements CRUDService<CategoryDto> {
         return categoryDto;
     }
 
+    /**
+     * Метод для преобразования сводного времени изменения категорий в версию ресурса.
+     * Идентификаторы и количества входят в версию, чтобы удаление записей тоже меняло её.
+     *
+     * @param ids     Уникальные идентификаторы категорий.
+     * @param version Сводное время изменения категорий и их новостей.
+     * @return Версия ресурса.
+     */
+    private static ResourceVersion mapToVersion(List<Long> ids, CategoryRepository.CategoriesVersion version) {
+        return ResourceVersion.of(ResourceVersion.latest(version.getCategoriesModifiedAt(), version.getNewsModifiedAt()),
+                ids, version.getCategoryCount(), version.getCategoriesModifiedAt(),
+                version.getNewsModifiedAt(), version.getNewsCount());
+    }
+
     /**
      * Метод для преобразования информации о категории от пользователя в информацию для базы данных.
      *
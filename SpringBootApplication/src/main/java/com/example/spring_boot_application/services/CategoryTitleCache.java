@@ -0,0 +1,67 @@
+/**
+ * Класс-кэш для получения уникального идентификатора категории по её названию.
+ * Новость от пользователя ссылается на категорию по названию, поэтому без кэша каждое создание и обновление новости
+ * выполняет запрос категории в базу данных. Кэш хранится в памяти приложения и полностью сбрасывается
+ * при любом изменении категорий через {@link CategoryCRUDService}.
+ */
+
+package com.example.spring_boot_application.services;
+
+import com.example.spring_boot_application.entity.Category;
+import com.example.spring_boot_application.repository.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CategoryTitleCache {
+
+    private final CategoryRepository categoryRepository;
+    private final Map<String, Long> ids = new ConcurrentHashMap<>();
+    /**
+     * Номер сброса кэша. Значение, загруженное до сброса, не должно попасть в кэш после него.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Метод для получения уникального идентификатора категории по её названию.
+     * При отсутствии названия в кэше категория загружается из базы данных. Отсутствующие категории не кэшируются.
+     *
+     * @param title Название категории.
+     * @return Уникальный идентификатор категории или пустое значение, если категории нет.
+     */
+    public Optional<Long> getId(String title) {
+        if (title == null) {
+            return Optional.empty();
+        }
+        Long id = ids.get(title);
+        if (id != null) {
+            return Optional.of(id);
+        }
+        long loadedGeneration = generation.get();
+        Optional<Long> loaded = categoryRepository.findByTitle(title).map(Category::getId);
+        loaded.ifPresent(value -> {
+            ids.put(title, value);
+            if (generation.get() != loadedGeneration) {
+                ids.remove(title, value);
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * Метод для сброса кэша после создания, изменения или удаления категории.
+     */
+    public void invalidate() {
+        log.info("Invalidate category titles");
+        generation.incrementAndGet();
+        ids.clear();
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Класс для постраничной выборки по ключу (keyset pagination).
+ * Вместо смещения OFFSET каждая страница начинается сразу после ключа последней записи предыдущей страницы,
+ * поэтому запрос к базе данных использует индекс и не перебирает пропущенные строки.
+ * Ключ передается пользователю в виде непрозрачного курсора.
+ */
+
+package com.example.spring_boot_application.services;
+
+import com.example.spring_boot_application.dto.PageDto;
+import org.springframework.data.domain.Limit;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+final class KeysetPagination {
+
+    private static final char SEPARATOR = '|';
+
+    private KeysetPagination() {
+    }
+
+    /**
+     * Метод для ограничения запрошенного размера страницы.
+     *
+     * @param size Запрошенный размер страницы.
+     * @return Размер страницы от 1 до {@link CRUDService#MAX_PAGE_SIZE}.
+     */
+    static int pageSize(int size) {
+        return Math.max(1, Math.min(size, CRUDService.MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Метод для получения ограничения выборки: на одну запись больше страницы,
+     * чтобы без отдельного запроса count узнать, есть ли следующая страница.
+     *
+     * @param pageSize Размер страницы.
+     * @return Ограничение выборки.
+     */
+    static Limit limit(int pageSize) {
+        return Limit.of(pageSize + 1);
+    }
+
+    /**
+     * Метод для формирования страницы из выбранных записей.
+     *
+     * @param rows     Записи из базы данных, не более pageSize + 1.
+     * @param pageSize Размер страницы.
+     * @param mapper   Преобразование записи в информацию для пользователя.
+     * @param cursor   Курсор, указывающий на запись.
+     * @return Страница с курсором следующей страницы или без него, если записей больше нет.
+     */
+    static <E, D> PageDto<D> page(List<E> rows, int pageSize, Function<E, D> mapper, Function<E, String> cursor) {
+        boolean hasNext = rows.size() > pageSize;
+        List<E> items = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasNext ? cursor.apply(items.get(items.size() - 1)) : null;
+        return new PageDto<>(items.stream().map(mapper).toList(), nextCursor);
+    }
+
+    /**
+     * Метод для создания курсора по уникальному идентификатору.
+     *
+     * @param id Уникальный идентификатор последней записи страницы.
+     * @return Курсор.
+     */
+    static String encode(Long id) {
+        return encode(String.valueOf(id));
+    }
+
+    /**
+     * Метод для создания курсора по дате и уникальному идентификатору.
+     *
+     * @param date Дата последней записи страницы.
+     * @param id   Уникальный идентификатор последней записи страницы.
+     * @return Курсор.
+     */
+    static String encode(Instant date, Long id) {
+        return encode(date.toString() + SEPARATOR + id);
+    }
+
+    /**
+     * Метод для получения уникального идентификатора из курсора.
+     *
+     * @param cursor Курсор.
+     * @return Уникальный идентификатор.
+     * @throws IllegalArgumentException если курсор поврежден или создан для сортировки по дате.
+     */
+    static Long decodeId(String cursor) {
+        String value = decode(cursor);
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor is not an id cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Метод для получения даты и уникального идентификатора из курсора.
+     *
+     * @param cursor Курсор.
+     * @return Дата и уникальный идентификатор последней записи предыдущей страницы.
+     * @throws IllegalArgumentException если курсор поврежден или создан для сортировки по идентификатору.
+     */
+    static DateKey decodeDateKey(String cursor) {
+        String value = decode(cursor);
+        int separator = value.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Cursor is not a date cursor: " + cursor);
+        }
+        try {
+            return new DateKey(Instant.parse(value.substring(0, separator)), Long.valueOf(value.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor is not a date cursor: " + cursor);
+        }
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Ключ записи при сортировке по дате.
+     */
+    record DateKey(Instant date, Long id) {
+    }
+}
@@ -7,6 +7,7 @@
 package com.example.spring_boot_application.services;
 
 import com.example.spring_boot_application.dto.NewsDto;
+import com.example.spring_boot_application.dto.PageDto;
 import com.example.spring_boot_application.entity.Category;
 import com.example.spring_boot_application.entity.News;
 import com.example.spring_boot_application.repository.CategoryRepository;
@@ -15,8 +16,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.util.Collection;
-import java.util.Optional;
+import java.util.List;
 
 @Service
 @Slf4j
@@ -24,11 +26,14 @@ public class NewsCRUDService implements CRUDService<NewsDto> {
 
     private final NewsRepository newsRepository;
     private final CategoryRepository categoryRepository;
+    private final CategoryTitleCache categoryTitleCache;
 
     @Autowired
-    public NewsCRUDService(NewsRepository newsRepository, CategoryRepository categoryRepository) {
+    public NewsCRUDService(NewsRepository newsRepository, CategoryRepository categoryRepository,
+                           CategoryTitleCache categoryTitleCache) {
         this.newsRepository = newsRepository;
         this.categoryRepository = categoryRepository;
+        this.categoryTitleCache = categoryTitleCache;
     }
 
     /**
@@ -46,6 +51,21 @@ public class NewsCRUDService implements CRUDService<NewsDto> {
         return mapToDto(news);
     }
 
+    /**
+     * Метод для получения версии новости для условных запросов HTTP.
+     * Версия зависит от времени изменения новости и её категории и вычисляется без загрузки новости.
+     *
+     * @param id Уникальный идентификатор новости.
+     * @return Версия новости.
+     * @throws java.util.NoSuchElementException если новости нет.
+     */
+    public ResourceVersion getVersion(Long id) {
+        log.info("Get version by ID: " + id);
+        NewsRepository.NewsVersion version = newsRepository.findVersionById(id).orElseThrow();
+        return ResourceVersion.of(ResourceVersion.latest(version.getModifiedAt(), version.getCategoryModifiedAt()),
+                id, version.getModifiedAt(), version.getCategoryModifiedAt());
+    }
+
     /**
      * Метод для получения информации о всех новостях из базы данных.
      *
@@ -60,6 +80,35 @@ public class NewsCRUDService implements CRUDService<NewsDto> {
                 .toList();
     }
 
+    /**
+     * Метод для постраничного получения новостей. Каждая страница выбирается запросом по ключу последней новости
+     * предыдущей страницы, а не смещением, поэтому не загружает в память всю таблицу и не замедляется к концу ленты.
+     *
+     * @param cursor Курсор из предыдущей страницы или null для первой страницы.
+     * @param size   Размер страницы, не больше {@link CRUDService#MAX_PAGE_SIZE}.
+     * @param order  Порядок новостей.
+     * @return Страница новостей с курсором следующей страницы.
+     * @throws IllegalArgumentException если курсор поврежден или создан для другого порядка.
+     */
+    public PageDto<NewsDto> getPage(String cursor, int size, Order order) {
+        log.info("Get page by " + order + " after " + cursor);
+        int pageSize = KeysetPagination.pageSize(size);
+        if (order == Order.DATE) {
+            List<News> rows;
+            if (cursor == null) {
+                rows = newsRepository.findLatest(KeysetPagination.limit(pageSize));
+            } else {
+                KeysetPagination.DateKey key = KeysetPagination.decodeDateKey(cursor);
+                rows = newsRepository.findLatestBefore(key.date(), key.id(), KeysetPagination.limit(pageSize));
+            }
+            return KeysetPagination.page(rows, pageSize, NewsCRUDService::mapToDto,
+                    news -> KeysetPagination.encode(news.getDate(), news.getId()));
+        }
+        Long after = cursor == null ? 0L : KeysetPagination.decodeId(cursor);
+        List<News> rows = newsRepository.findByIdGreaterThanOrderByIdAsc(after, KeysetPagination.limit(pageSize));
+        return KeysetPagination.page(rows, pageSize, NewsCRUDService::mapToDto, news -> KeysetPagination.encode(news.getId()));
+    }
+
     /**
      * Метод для создания новости. Получает информацию от пользователя о новости
      * и сохраняет информацию в базу данных.
@@ -70,9 +119,10 @@ public class NewsCRUDService implements CRUDService<NewsDto> {
     public void create(NewsDto newsDto) {
         log.info("Create ");
         News news = mapToEntity(newsDto);
-        String categoryName = newsDto.getCategory();
-        Optional<Category> category = categoryRepository.findByTitle(categoryName);
-        news.setCategory(category.get());
+        if (news.getDate() == null) {
+            news.setDate(Instant.now());
+        }
+        news.setCategory(getCategoryReference(newsDto.getCategory()));
         newsRepository.save(news);
     }
 
@@ -80,6 +130,8 @@ public class NewsCRUDService implements CRUDService<NewsDto> {
      * Метод для обновлении информации о новости. Получает информацию о новости от пользователя,
      * проверяет наличие новости по ID в базе данных и преобразует информацию полученную от пользователя в
      * информацию для базы данных. Обновляет запись о новости в базе данных.
+     * Если дата не передана, сохраняется дата из базы данных, чтобы новость не выпала из ленты по дате.
+     * Если новости еще нет в базе данных, ставится текущая дата, как при создании.
      *
      * @param newsDto Полученая информация о новости от пользователя.
      */
@@ -87,9 +139,11 @@ public class NewsCRUDService implements CRUDService<NewsDto> {
     public void update(NewsDto newsDto) {
         log.info("Update ");
         News news = mapToEntity(newsDto);
-        String categoryName = newsDto.getCategory();
-        Optional<Category> category = categoryRepository.findByTitle(categoryName);
-        news.setCategory(category.get());
+        if (news.getDate() == null) {
+            news.setDate(newsDto.getId() == null ? Instant.now()
+                    : newsRepository.findDateById(newsDto.getId()).orElseGet(Instant::now));
+        }
+        news.setCategory(getCategoryReference(newsDto.getCategory()));
         newsRepository.save(news);
     }
 
@@ -104,6 +158,20 @@ public class NewsCRUDService implements CRUDService<NewsDto> {
         newsRepository.deleteById(id);
     }
 
+    /**
+     * Метод для получения ссылки на категорию по её названию без загрузки категории из базы данных.
+     * Уникальный идентификатор берется из {@link CategoryTitleCache}, а вместо сущности используется прокси,
+     * которого достаточно для записи внешнего ключа новости.
+     *
+     * @param categoryName Название категории.
+     * @return Ссылка на категорию.
+     * @throws java.util.NoSuchElementException если категории с таким названием нет.
+     */
+    private Category getCategoryReference(String categoryName) {
+        Long categoryId = categoryTitleCache.getId(categoryName).orElseThrow();
+        return categoryRepository.getReferenceById(categoryId);
+    }
+
     /**
      * Метод для преобразования информации о новости из базы данных в информацию для пользователя.
      *
@@ -131,6 +199,21 @@ public class NewsCRUDService implements CRUDService<NewsDto> {
         news.setId(newsDto.getId());
         news.setTitle(newsDto.getTitle());
         news.setText(newsDto.getText());
+        news.setDate(newsDto.getDate());
         return news;
     }
+
+    /**
+     * Порядок новостей при постраничном получении.
+     */
+    public enum Order {
+        /**
+         * По возрастанию уникального идентификатора, то есть в порядке добавления.
+         */
+        ID,
+        /**
+         * От свежих к старым, новости с одинаковой датой - по убыванию идентификатора.
+         */
+        DATE
+    }
 }
@@ -0,0 +1,66 @@
+/**
+ * Класс для описания версии ресурса при условных запросах HTTP.
+ * Версия вычисляется по времени изменения записей в базе данных без загрузки самих записей, поэтому
+ * ответ 304 (Not Modified) на запрос с заголовком If-None-Match или If-Modified-Since обходится без выборки
+ * и преобразования информации для пользователя.
+ */
+
+package com.example.spring_boot_application.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.stream.Collectors;
+
+/**
+ * @param etag         Значение заголовка ETag в кавычках.
+ * @param lastModified Время последнего изменения или null, если оно неизвестно.
+ */
+public record ResourceVersion(String etag, Instant lastModified) {
+
+    private static final int ETAG_BYTES = 16;
+
+    /**
+     * Метод для вычисления версии ресурса по составляющим его ключам и времени изменения.
+     *
+     * @param lastModified Время последнего изменения или null.
+     * @param parts        Значения, от которых зависит содержимое ответа.
+     * @return Версия ресурса.
+     */
+    static ResourceVersion of(Instant lastModified, Object... parts) {
+        String key = Arrays.stream(parts)
+                .map(String::valueOf)
+                .collect(Collectors.joining("|"));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            String etag = Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, ETAG_BYTES));
+            return new ResourceVersion("\"" + etag + "\"", lastModified);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Метод для выбора более позднего из двух моментов времени.
+     *
+     * @param first  Первый момент или null.
+     * @param second Второй момент или null.
+     * @return Более поздний момент или null, если оба неизвестны.
+     */
+    static Instant latest(Instant first, Instant second) {
+        if (first == null) {
+            return second;
+        }
+        return second == null || first.isAfter(second) ? first : second;
+    }
+
+    /**
+     * @return Время последнего изменения в миллисекундах или -1, если оно неизвестно.
+     */
+    public long lastModifiedMillis() {
+        return lastModified == null ? -1 : lastModified.toEpochMilli();
+    }
+}
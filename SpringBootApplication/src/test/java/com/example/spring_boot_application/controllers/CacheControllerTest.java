@@ -0,0 +1,40 @@
+package com.example.spring_boot_application.controllers;
+
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.spring_boot_application.dto.CacheRegionStatisticsDto;
+import com.example.spring_boot_application.services.CacheStatisticsService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+public class CacheControllerTest {
+
+    @Mock
+    private CacheStatisticsService cacheStatisticsService;
+
+    @InjectMocks
+    private CacheController cacheController;
+
+    @Test
+    @DisplayName("Test for receiving cache statistics")
+    public void testGetStatistics() {
+        List<CacheRegionStatisticsDto> statistics = List.of(
+                new CacheRegionStatisticsDto("com.example.spring_boot_application.entity.News", 3, 1, 1, 0.75));
+        when(cacheStatisticsService.getStatistics()).thenReturn(statistics);
+
+        ResponseEntity response = cacheController.getStatistics();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(statistics, response.getBody());
+    }
+}
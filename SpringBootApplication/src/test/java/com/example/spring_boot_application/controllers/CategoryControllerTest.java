@@ -5,7 +5,9 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import com.example.spring_boot_application.dto.CategoryDto;
 import com.example.spring_boot_application.dto.NewsDto;
+import com.example.spring_boot_application.dto.PageDto;
 import com.example.spring_boot_application.services.CategoryCRUDService;
+import com.example.spring_boot_application.services.ResourceVersion;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,16 +17,18 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.time.Instant;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 
 @ExtendWith(MockitoExtension.class)
 public class CategoryControllerTest {
 
     private static final long ID = 1L;
+    private static final ResourceVersion VERSION = new ResourceVersion("\"v1\"", null);
 
     @Mock
     private CategoryCRUDService categoryCRUDService;
@@ -52,9 +56,10 @@ public class CategoryControllerTest {
     @Test
     @DisplayName("Test for successfully receiving category by ID")
     public void testGetCategoryById_Success() {
+        when(categoryCRUDService.getVersion(ID)).thenReturn(VERSION);
         when(categoryCRUDService.getById(ID)).thenReturn(categoryDto);
 
-        ResponseEntity response = categoryController.getCategoryById(ID);
+        ResponseEntity response = categoryController.getCategoryById(ID, request(new MockHttpServletRequest()));
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(categoryDto, response.getBody());
@@ -63,9 +68,9 @@ public class CategoryControllerTest {
     @Test
     @DisplayName("Test for the case when the category is not found")
     public void testGetCategoryById_NotFound() {
-        when(categoryCRUDService.getById(ID)).thenThrow(new RuntimeException("Категория с ID " + ID + " не найдена"));
+        when(categoryCRUDService.getVersion(ID)).thenThrow(new RuntimeException("Категория с ID " + ID + " не найдена"));
 
-        ResponseEntity response = categoryController.getCategoryById(ID);
+        ResponseEntity response = categoryController.getCategoryById(ID, request(new MockHttpServletRequest()));
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         assertEquals("Категория с ID " + ID + " не найдена", response.getBody());
@@ -73,14 +78,38 @@ public class CategoryControllerTest {
 
     @Test
     public void testGetAllCategories() {
-        List<CategoryDto> categories = Collections.singletonList(categoryDto);
+        PageDto<CategoryDto> page = new PageDto<>(List.of(categoryDto), null);
 
-        when(categoryCRUDService.getAll()).thenReturn(categories);
+        when(categoryCRUDService.getPageVersion(null, 20)).thenReturn(VERSION);
+        when(categoryCRUDService.getPage(null, 20)).thenReturn(page);
 
-        Collection<CategoryDto> response = categoryController.getAllCategories();
+        ResponseEntity response = categoryController.getAllCategories(null, 20, request(new MockHttpServletRequest()));
 
-        assertEquals(1, response.size());
-        assertTrue(response.contains(categoryDto));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(page, response.getBody());
+    }
+
+    @Test
+    @DisplayName("Test for the case when the page of categories has not changed since the ETag")
+    public void testGetAllCategories_NotModified() {
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", "/categories");
+        servletRequest.addHeader("If-None-Match", VERSION.etag());
+        when(categoryCRUDService.getPageVersion(null, 20)).thenReturn(VERSION);
+
+        ResponseEntity response = categoryController.getAllCategories(null, 20, request(servletRequest));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        verify(categoryCRUDService, never()).getPage(any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Test for the case when the page cursor is invalid")
+    public void testGetAllCategories_InvalidCursor() {
+        when(categoryCRUDService.getPageVersion("broken", 20)).thenThrow(new IllegalArgumentException("Malformed cursor: broken"));
+
+        ResponseEntity response = categoryController.getAllCategories("broken", 20, request(new MockHttpServletRequest()));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
 
     @Test
@@ -103,4 +132,9 @@ public class CategoryControllerTest {
 
         verify(categoryCRUDService, times(1)).getById(ID);
     }
+
+    private static ServletWebRequest request(MockHttpServletRequest request) {
+        request.setMethod("GET");
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
 }
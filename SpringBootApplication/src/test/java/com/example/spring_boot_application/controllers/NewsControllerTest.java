@@ -2,7 +2,9 @@ package com.example.spring_boot_application.controllers;
 
 import com.example.spring_boot_application.dto.CategoryDto;
 import com.example.spring_boot_application.dto.NewsDto;
+import com.example.spring_boot_application.dto.PageDto;
 import com.example.spring_boot_application.services.NewsCRUDService;
+import com.example.spring_boot_application.services.ResourceVersion;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -12,20 +14,23 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.time.Instant;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class NewsControllerTest {
 
     private static final long ID = 1L;
+    private static final ResourceVersion VERSION = new ResourceVersion("\"v1\"", Instant.parse("2024-06-26T10:15:30Z"));
 
     @Mock
     private NewsCRUDService newsCRUDService;
@@ -53,35 +58,94 @@ public class NewsControllerTest {
     @Test
     @DisplayName("Test for successfully receiving news by ID")
     public void testGetNewsById_Success() {
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+        when(newsCRUDService.getVersion(ID)).thenReturn(VERSION);
         when(newsCRUDService.getById(ID)).thenReturn(newsDto);
 
-        ResponseEntity response = newsController.getNewsById(ID);
+        ResponseEntity response = newsController.getNewsById(ID, new ServletWebRequest(new MockHttpServletRequest("GET", "/news/1"), servletResponse));
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(newsDto, response.getBody());
+        assertEquals(VERSION.etag(), servletResponse.getHeader("ETag"));
+    }
+
+    @Test
+    @DisplayName("Test for the case when the news has not changed since the ETag")
+    public void testGetNewsById_NotModifiedByETag() {
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", "/news/1");
+        servletRequest.addHeader("If-None-Match", VERSION.etag());
+        when(newsCRUDService.getVersion(ID)).thenReturn(VERSION);
+
+        ResponseEntity response = newsController.getNewsById(ID, new ServletWebRequest(servletRequest, new MockHttpServletResponse()));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        verify(newsCRUDService, never()).getById(ID);
+    }
+
+    @Test
+    @DisplayName("Test for the case when the news has not changed since the date")
+    public void testGetNewsById_NotModifiedSince() {
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", "/news/1");
+        servletRequest.addHeader("If-Modified-Since", VERSION.lastModifiedMillis());
+        when(newsCRUDService.getVersion(ID)).thenReturn(VERSION);
+
+        ResponseEntity response = newsController.getNewsById(ID, new ServletWebRequest(servletRequest, new MockHttpServletResponse()));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        verify(newsCRUDService, never()).getById(ID);
     }
 
     @Test
     @DisplayName("Test for the case when the news is not found")
     public void testGetNewsBiID_NotFound() {
-        when(newsCRUDService.getById(ID)).thenThrow(new RuntimeException("Категория с ID " + ID + " не найдена"));
+        when(newsCRUDService.getVersion(ID)).thenThrow(new NoSuchElementException());
 
-        ResponseEntity response = newsController.getNewsById(ID);
+        ResponseEntity response = newsController.getNewsById(ID,
+                new ServletWebRequest(new MockHttpServletRequest("GET", "/news/1"), new MockHttpServletResponse()));
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
-        assertEquals("Категория с ID " + ID + " не найдена", response.getBody());
+        assertEquals("Новость с ID " + ID + " не найдена", response.getBody());
+    }
+
+    @Test
+    @DisplayName("Test that other failures are not reported as a missing news")
+    public void testGetNewsBiID_Failure() {
+        when(newsCRUDService.getVersion(ID)).thenThrow(new IllegalStateException("Database is unavailable"));
+
+        assertThrows(IllegalStateException.class, () -> newsController.getNewsById(ID,
+                new ServletWebRequest(new MockHttpServletRequest("GET", "/news/1"), new MockHttpServletResponse())));
     }
 
     @Test
     public void testGetAllNews() {
-        List<NewsDto> news = Collections.singletonList(newsDto);
+        PageDto<NewsDto> page = new PageDto<>(List.of(newsDto), "next");
+
+        when(newsCRUDService.getPage(null, 20, NewsCRUDService.Order.DATE)).thenReturn(page);
+
+        ResponseEntity response = newsController.getAllNews(null, 20, "date");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(page, response.getBody());
+    }
+
+    @Test
+    @DisplayName("Test for the case when the page cursor is invalid")
+    public void testGetAllNews_InvalidCursor() {
+        when(newsCRUDService.getPage("broken", 20, NewsCRUDService.Order.ID))
+                .thenThrow(new IllegalArgumentException("Malformed cursor: broken"));
 
-        when(newsController.getAllNews()).thenReturn(news);
+        ResponseEntity response = newsController.getAllNews("broken", 20, "id");
 
-        Collection<NewsDto> response = newsController.getAllNews();
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Test for the case when the sort order is unknown")
+    public void testGetAllNews_UnknownSort() {
+        ResponseEntity response = newsController.getAllNews(null, 20, "title");
 
-        assertEquals(1, news.size());
-        assertTrue(response.contains(newsDto));
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(newsCRUDService);
     }
 
     @Test
@@ -0,0 +1,70 @@
+package com.example.spring_boot_application.services;
+
+import com.example.spring_boot_application.dto.CacheRegionStatisticsDto;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CacheStatisticsServiceTest {
+
+    private static final String NEWS_REGION = "com.example.spring_boot_application.entity.News";
+    private static final String CATEGORY_REGION = "com.example.spring_boot_application.entity.Category";
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private SessionFactory sessionFactory;
+
+    @Mock
+    private Statistics statistics;
+
+    @Mock
+    private CacheRegionStatistics newsStatistics;
+
+    @Mock
+    private CacheRegionStatistics categoryStatistics;
+
+    private CacheStatisticsService cacheStatisticsService;
+
+    @BeforeEach
+    void setUp() {
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getStatistics()).thenReturn(statistics);
+        cacheStatisticsService = new CacheStatisticsService(entityManagerFactory);
+    }
+
+    @Test
+    @DisplayName("Test for receiving hit and miss statistics of every cache region")
+    void testGetStatistics() {
+        when(statistics.getSecondLevelCacheRegionNames()).thenReturn(new String[]{NEWS_REGION, CATEGORY_REGION});
+        when(statistics.getCacheRegionStatistics(NEWS_REGION)).thenReturn(newsStatistics);
+        when(statistics.getCacheRegionStatistics(CATEGORY_REGION)).thenReturn(categoryStatistics);
+        when(newsStatistics.getHitCount()).thenReturn(3L);
+        when(newsStatistics.getMissCount()).thenReturn(1L);
+        when(newsStatistics.getPutCount()).thenReturn(1L);
+
+        List<CacheRegionStatisticsDto> regions = cacheStatisticsService.getStatistics();
+
+        assertEquals(2, regions.size());
+        assertEquals(CATEGORY_REGION, regions.get(0).getRegion());
+        assertEquals(0, regions.get(0).getHitRatio());
+        assertEquals(NEWS_REGION, regions.get(1).getRegion());
+        assertEquals(3L, regions.get(1).getHitCount());
+        assertEquals(1L, regions.get(1).getMissCount());
+        assertEquals(0.75, regions.get(1).getHitRatio());
+    }
+}
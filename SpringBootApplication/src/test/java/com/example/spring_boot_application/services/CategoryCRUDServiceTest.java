@@ -2,6 +2,7 @@ package com.example.spring_boot_application.services;
 
 import com.example.spring_boot_application.dto.CategoryDto;
 import com.example.spring_boot_application.dto.NewsDto;
+import com.example.spring_boot_application.dto.PageDto;
 import com.example.spring_boot_application.entity.Category;
 import com.example.spring_boot_application.entity.News;
 import com.example.spring_boot_application.repository.CategoryRepository;
@@ -12,12 +13,16 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -29,6 +34,9 @@ public class CategoryCRUDServiceTest {
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private CategoryTitleCache categoryTitleCache;
+
     @InjectMocks
     private CategoryCRUDService categoryCRUDService;
 
@@ -93,11 +101,88 @@ public class CategoryCRUDServiceTest {
         verify(categoryRepository, times(1)).findAll();
     }
 
+    @Test
+    @DisplayName("Test for receiving categories page by page")
+    void testGetPage() {
+        Category next = new Category();
+        next.setId(2L);
+        next.setTitle("Next Category");
+        next.setNews(List.of());
+
+        when(categoryRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), argThat(limit -> limit.max() == 2)))
+                .thenReturn(List.of(category, next));
+        when(categoryRepository.findByIdGreaterThanOrderByIdAsc(eq(ID), any(Limit.class))).thenReturn(List.of(next));
+
+        PageDto<CategoryDto> first = categoryCRUDService.getPage(null, 1);
+        PageDto<CategoryDto> last = categoryCRUDService.getPage(first.getNextCursor(), 1);
+
+        assertEquals(ID, first.getItems().get(0).getId());
+        assertNotNull(first.getNextCursor());
+        assertEquals(2L, last.getItems().get(0).getId());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Test for loading news of all categories on a page with one query")
+    void testGetPage_LoadsNewsInOneQuery() {
+        Category row = new Category();
+        row.setId(ID);
+        row.setTitle("Test Category");
+
+        when(categoryRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(List.of(row));
+        when(categoryRepository.findAllWithNewsByIdIn(List.of(ID))).thenReturn(List.of(category));
+
+        PageDto<CategoryDto> page = categoryCRUDService.getPage(null, 10);
+
+        assertEquals(1, page.getItems().get(0).getNews().size());
+        verify(categoryRepository, times(1)).findAllWithNewsByIdIn(List.of(ID));
+    }
+
+    @Test
+    @DisplayName("Test for capping the page size")
+    void testGetPage_SizeCapped() {
+        when(categoryRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(List.of(category));
+
+        categoryCRUDService.getPage(null, 10_000);
+
+        verify(categoryRepository).findByIdGreaterThanOrderByIdAsc(eq(0L), argThat(limit -> limit.max() == CRUDService.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    @DisplayName("Test for the page version changing when a news item is deleted")
+    void testGetPageVersion() {
+        Instant modifiedAt = Instant.parse("2024-06-26T10:15:30Z");
+        CategoryRepository.CategoriesVersion version = mock(CategoryRepository.CategoriesVersion.class);
+        when(version.getCategoryCount()).thenReturn(1L);
+        when(version.getCategoriesModifiedAt()).thenReturn(modifiedAt);
+        when(version.getNewsCount()).thenReturn(2L, 1L);
+        when(categoryRepository.findIdsAfter(eq(0L), any(Limit.class))).thenReturn(List.of(ID));
+        when(categoryRepository.findVersionByIdIn(List.of(ID))).thenReturn(version);
+
+        ResourceVersion first = categoryCRUDService.getPageVersion(null, 20);
+        ResourceVersion second = categoryCRUDService.getPageVersion(null, 20);
+
+        assertEquals(modifiedAt, first.lastModified());
+        assertNotEquals(first.etag(), second.etag());
+        verify(categoryRepository, never()).findByIdGreaterThanOrderByIdAsc(any(), any());
+    }
+
+    @Test
+    @DisplayName("Test for the version of a category that is not found")
+    void testGetVersion_NotFound() {
+        CategoryRepository.CategoriesVersion version = mock(CategoryRepository.CategoriesVersion.class);
+        when(version.getCategoryCount()).thenReturn(0L);
+        when(categoryRepository.findVersionByIdIn(List.of(ID))).thenReturn(version);
+
+        assertThrows(RuntimeException.class, () -> categoryCRUDService.getVersion(ID));
+    }
+
     @Test
     void testCreate() {
         categoryCRUDService.create(categoryDto);
 
         verify(categoryRepository, times(1)).save(any(Category.class));
+        verify(categoryTitleCache, times(1)).invalidate();
     }
 
     @Test
@@ -105,6 +190,7 @@ public class CategoryCRUDServiceTest {
         categoryCRUDService.update(categoryDto);
 
         verify(categoryRepository, times(1)).save(any(Category.class));
+        verify(categoryTitleCache, times(1)).invalidate();
     }
 
     @Test
@@ -112,5 +198,6 @@ public class CategoryCRUDServiceTest {
         categoryCRUDService.delete(ID);
 
         verify(categoryRepository, times(1)).deleteById(ID);
+        verify(categoryTitleCache, times(1)).invalidate();
     }
 }
@@ -0,0 +1,73 @@
+package com.example.spring_boot_application.services;
+
+import com.example.spring_boot_application.entity.Category;
+import com.example.spring_boot_application.repository.CategoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CategoryTitleCacheTest {
+
+    private static final long ID = 1L;
+    private static final String TITLE = "Test Category";
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @InjectMocks
+    private CategoryTitleCache categoryTitleCache;
+
+    private Category category;
+
+    @BeforeEach
+    void setUp() {
+        category = new Category();
+        category.setId(ID);
+        category.setTitle(TITLE);
+    }
+
+    @Test
+    @DisplayName("Test for loading the category only on the first request")
+    void testGetId_Cached() {
+        when(categoryRepository.findByTitle(TITLE)).thenReturn(Optional.of(category));
+
+        assertEquals(Optional.of(ID), categoryTitleCache.getId(TITLE));
+        assertEquals(Optional.of(ID), categoryTitleCache.getId(TITLE));
+
+        verify(categoryRepository, times(1)).findByTitle(TITLE);
+    }
+
+    @Test
+    @DisplayName("Test for reloading the category after invalidation")
+    void testGetId_AfterInvalidate() {
+        when(categoryRepository.findByTitle(TITLE)).thenReturn(Optional.of(category));
+
+        categoryTitleCache.getId(TITLE);
+        categoryTitleCache.invalidate();
+        categoryTitleCache.getId(TITLE);
+
+        verify(categoryRepository, times(2)).findByTitle(TITLE);
+    }
+
+    @Test
+    @DisplayName("Test for the case when the category is not found")
+    void testGetId_NotFound() {
+        when(categoryRepository.findByTitle(TITLE)).thenReturn(Optional.empty());
+
+        assertTrue(categoryTitleCache.getId(TITLE).isEmpty());
+        assertTrue(categoryTitleCache.getId(TITLE).isEmpty());
+
+        verify(categoryRepository, times(2)).findByTitle(TITLE);
+    }
+}
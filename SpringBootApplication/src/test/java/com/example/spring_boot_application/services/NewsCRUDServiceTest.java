@@ -1,6 +1,7 @@
 package com.example.spring_boot_application.services;
 
 import com.example.spring_boot_application.dto.NewsDto;
+import com.example.spring_boot_application.dto.PageDto;
 import com.example.spring_boot_application.entity.Category;
 import com.example.spring_boot_application.entity.News;
 import com.example.spring_boot_application.repository.CategoryRepository;
@@ -12,12 +13,16 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -32,6 +37,9 @@ public class NewsCRUDServiceTest {
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private CategoryTitleCache categoryTitleCache;
+
     @InjectMocks
     private NewsCRUDService newsCRUDService;
 
@@ -81,6 +89,23 @@ public class NewsCRUDServiceTest {
         verify(newsRepository, times(1)).findById(ID);
     }
 
+    @Test
+    @DisplayName("Test for the news version depending on the category change")
+    void testGetVersion() {
+        Instant modifiedAt = Instant.parse("2024-06-26T10:15:30Z");
+        NewsRepository.NewsVersion version = mock(NewsRepository.NewsVersion.class);
+        when(version.getModifiedAt()).thenReturn(modifiedAt);
+        when(version.getCategoryModifiedAt()).thenReturn(modifiedAt.plusSeconds(60), modifiedAt.plusSeconds(120));
+        when(newsRepository.findVersionById(ID)).thenReturn(Optional.of(version));
+
+        ResourceVersion first = newsCRUDService.getVersion(ID);
+        ResourceVersion second = newsCRUDService.getVersion(ID);
+
+        assertEquals(modifiedAt.plusSeconds(60), first.lastModified());
+        assertNotEquals(first.etag(), second.etag());
+        verify(newsRepository, never()).findById(ID);
+    }
+
     @Test
     void testGetAll() {
         when(newsRepository.findAll()).thenReturn(List.of(news));
@@ -92,22 +117,100 @@ public class NewsCRUDServiceTest {
         verify(newsRepository, times(1)).findAll();
     }
 
+    @Test
+    @DisplayName("Test for receiving news page by page in order of ID")
+    void testGetPage_ById() {
+        News next = new News();
+        next.setId(2L);
+        next.setTitle("Next News");
+        next.setCategory(category);
+
+        when(newsRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), argThat(limit -> limit.max() == 2)))
+                .thenReturn(List.of(news, next));
+        when(newsRepository.findByIdGreaterThanOrderByIdAsc(eq(ID), any(Limit.class))).thenReturn(List.of(next));
+
+        PageDto<NewsDto> first = newsCRUDService.getPage(null, 1, NewsCRUDService.Order.ID);
+        PageDto<NewsDto> last = newsCRUDService.getPage(first.getNextCursor(), 1, NewsCRUDService.Order.ID);
+
+        assertEquals(1, first.getItems().size());
+        assertEquals(ID, first.getItems().get(0).getId());
+        assertNotNull(first.getNextCursor());
+        assertEquals(2L, last.getItems().get(0).getId());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Test for receiving news page by page from the latest")
+    void testGetPage_ByDate() {
+        News older = new News();
+        older.setId(2L);
+        older.setTitle("Older News");
+        older.setDate(news.getDate().minusSeconds(60));
+        older.setCategory(category);
+
+        when(newsRepository.findLatest(any(Limit.class))).thenReturn(List.of(news, older));
+
+        PageDto<NewsDto> first = newsCRUDService.getPage(null, 1, NewsCRUDService.Order.DATE);
+        newsCRUDService.getPage(first.getNextCursor(), 1, NewsCRUDService.Order.DATE);
+
+        assertEquals(ID, first.getItems().get(0).getId());
+        verify(newsRepository, times(1)).findLatestBefore(eq(news.getDate()), eq(ID), any(Limit.class));
+    }
+
+    @Test
+    @DisplayName("Test for the case when the cursor does not match the sort order")
+    void testGetPage_InvalidCursor() {
+        when(newsRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(List.of(news, news));
+
+        String idCursor = newsCRUDService.getPage(null, 1, NewsCRUDService.Order.ID).getNextCursor();
+
+        assertThrows(IllegalArgumentException.class, () -> newsCRUDService.getPage(idCursor, 1, NewsCRUDService.Order.DATE));
+        assertThrows(IllegalArgumentException.class, () -> newsCRUDService.getPage("broken!", 1, NewsCRUDService.Order.ID));
+    }
+
     @Test
     void testCreate() {
-        when(categoryRepository.findByTitle("Test Category")).thenReturn(Optional.of(category));
+        when(categoryTitleCache.getId("Test Category")).thenReturn(Optional.of(ID));
+        when(categoryRepository.getReferenceById(ID)).thenReturn(category);
 
         newsCRUDService.create(newsDto);
 
-        verify(newsRepository, times(1)).save(any(News.class));
+        verify(newsRepository, times(1)).save(argThat((News saved) -> saved.getCategory() == category));
+        verify(categoryRepository, never()).findByTitle(anyString());
+    }
+
+    @Test
+    @DisplayName("Test for the case when the category of the news is not found")
+    void testCreate_CategoryNotFound() {
+        when(categoryTitleCache.getId("Test Category")).thenReturn(Optional.empty());
+
+        assertThrows(RuntimeException.class, () -> newsCRUDService.create(newsDto));
+        verify(newsRepository, never()).save(any(News.class));
     }
 
     @Test
     void testUpdate() {
-        when(categoryRepository.findByTitle("Test Category")).thenReturn(Optional.of(category));
+        when(categoryTitleCache.getId("Test Category")).thenReturn(Optional.of(ID));
+        when(categoryRepository.getReferenceById(ID)).thenReturn(category);
 
         newsCRUDService.update(newsDto);
 
         verify(newsRepository, times(1)).save(any(News.class));
+        verify(newsRepository, never()).findDateById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Test for keeping the stored date when the update does not contain it")
+    void testUpdate_WithoutDate() {
+        Instant storedDate = news.getDate();
+        newsDto.setDate(null);
+        when(newsRepository.findDateById(ID)).thenReturn(Optional.of(storedDate));
+        when(categoryTitleCache.getId("Test Category")).thenReturn(Optional.of(ID));
+        when(categoryRepository.getReferenceById(ID)).thenReturn(category);
+
+        newsCRUDService.update(newsDto);
+
+        verify(newsRepository, times(1)).save(argThat((News saved) -> storedDate.equals(saved.getDate())));
     }
 
     @Test